@@ -0,0 +1,83 @@
+package ljsure.cn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 解析IP查询API的响应（HttpGeoResolver.parseAPIResponse）
+ * padding 为响应中额外的无关字段数，模拟接口返回更多数据时的情况
+ * legacyParseAPIResponse 为改用 ApiResponseReader 之前的 indexOf 解析，包含响应体解码为字符串的开销；
+ * 旧代码的日志仍会拼接字符串，但输出被关闭，避免刷屏
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResponseBenchmark {
+    @Param({"0", "20"})
+    public int padding;
+
+    private HttpGeoResolver resolver;
+    private byte[] response;
+    private Logger legacyLogger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        IPLog plugin = BenchmarkSupport.loadIPLog();
+        resolver = new HttpGeoResolver(plugin);
+
+        StringBuilder json = new StringBuilder("{\"code\":\"Success\",\"msg\":\"查询成功\",\"data\":{");
+        for (int i = 0; i < padding; i++) {
+            json.append("\"extra").append(i).append("\":{\"value\":\"\\u6d4b\\u8bd5").append(i).append("\",\"list\":[1,2,3]},");
+        }
+        json.append("\"continent\":\"亚洲\",\"country\":\"中国\",\"prov\":\"广东省\",\"city\":\"深圳市\",")
+                .append("\"district\":\"\",\"isp\":\"中国电信\",\"lat\":\"22.54\",\"lng\":\"114.05\"},")
+                .append("\"ip\":\"1.2.3.4\"}");
+        response = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        legacyLogger = Logger.getAnonymousLogger();
+        legacyLogger.setUseParentHandlers(false);
+        legacyLogger.setLevel(java.util.logging.Level.OFF);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resolver.close();
+        BenchmarkSupport.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, String> parseAPIResponse() throws IOException {
+        return resolver.parseAPIResponse(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public String[] readFields() throws IOException {
+        return ApiResponseReader.read(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public Map<String, String> legacyParseAPIResponse() {
+        return LegacyApiResponseParser.parseAPIResponse(new String(response, StandardCharsets.UTF_8), legacyLogger);
+    }
+}
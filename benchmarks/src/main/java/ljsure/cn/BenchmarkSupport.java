@@ -0,0 +1,136 @@
+package ljsure.cn;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.MockPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+/**
+ * 性能测试共用的工具：模拟服务端、插件实例和可重复生成的测试数据
+ * 第 i 个玩家的UUID、名字和IP地址只由 i 决定，不同次运行的数据完全相同
+ */
+public final class BenchmarkSupport {
+    // 测试数据的固定起始时间，不依赖运行时的系统时间
+    public static final long BASE_TIME = 1_700_000_000_000L;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 启动模拟服务端（同一JVM中只启动一次）
+     */
+    public static void ensureServer() {
+        if (!MockBukkit.isMocked()) {
+            MockBukkit.mock();
+        }
+    }
+
+    /**
+     * 只提供配置和数据目录的插件实例，用于单独创建存储实现
+     */
+    public static MockPlugin createPlugin() {
+        ensureServer();
+        return MockBukkit.createMockPlugin();
+    }
+
+    /**
+     * 加载并启用完整的 IPLog 插件，关闭IP地理信息查询以避免网络请求
+     */
+    public static IPLog loadIPLog() {
+        ensureServer();
+        IPLog plugin = MockBukkit.load(IPLog.class);
+        plugin.getConfig().set("features.query-ip-location", false);
+        plugin.getConfig().set("debug.enabled", false);
+        return plugin;
+    }
+
+    /**
+     * 替换插件使用的存储（不经过玩家缓存）
+     */
+    public static void replaceStorage(IPLog plugin, StorageHandler storage) throws ReflectiveOperationException {
+        setField(plugin, "storageHandler", storage);
+        setField(plugin, "playerCache", null);
+    }
+
+    public static void shutdown() {
+        if (MockBukkit.isMocked()) {
+            MockBukkit.unmock();
+        }
+    }
+
+    public static UUID uuid(int i) {
+        return new UUID(0x1234_5678_9abcL << 16, i);
+    }
+
+    public static String name(int i) {
+        return "Player" + i;
+    }
+
+    /**
+     * 第 i 个地址，IPv4-mapped 形式
+     */
+    public static byte[] address(int i) {
+        return IPAddresses.toBytes("10." + ((i >>> 16) & 0xFF) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF));
+    }
+
+    /**
+     * 生成一名玩家，带 historySize 条IP记录（最新在前）
+     */
+    public static PlayerData player(int i, int historySize) {
+        PlayerData data = new PlayerData(uuid(i).toString(), name(i));
+        for (int j = historySize - 1; j >= 0; j--) {
+            long seen = BASE_TIME + j * 60_000L;
+            IPRecord record = new IPRecord(address(i * 8 + j), seen - 3_600_000L, seen);
+            record.setLocation("中国 广东 深圳");
+            record.setIsp("电信");
+            data.addIPRecord(record);
+        }
+        if (historySize > 0) {
+            IPRecord latest = data.getIpHistory().get(0);
+            data.setCurrentAddress(latest.getAddress());
+            data.setCurrentLocation(latest.getLocation());
+            data.setCurrentISP(latest.getIsp());
+            data.setLastSeen(latest.getLastSeen());
+        }
+        return data;
+    }
+
+    /**
+     * 直接按 YamlStorageHandler 保存的格式写出数据文件，比逐个保存快得多
+     */
+    public static void writeYamlData(File file, int players, int historySize) throws IOException {
+        file.getParentFile().mkdirs();
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("players:\n");
+            for (int i = 0; i < players; i++) {
+                PlayerData data = player(i, historySize);
+                writer.write("  " + data.getUuid() + ":\n");
+                writer.write("    name: " + data.getName() + "\n");
+                writer.write("    currentIP: " + data.getCurrentIP() + "\n");
+                writer.write("    currentLocation: " + data.getCurrentLocation() + "\n");
+                writer.write("    currentISP: " + data.getCurrentISP() + "\n");
+                writer.write("    lastSeen: " + data.getLastSeen() + "\n");
+                writer.write("    ipHistory:\n");
+                for (IPRecord record : data.getIpHistory()) {
+                    writer.write("    - ip: " + record.getIp() + "\n");
+                    writer.write("      firstSeen: " + record.getFirstSeen() + "\n");
+                    writer.write("      lastSeen: " + record.getLastSeen() + "\n");
+                    writer.write("      location: " + record.getLocation() + "\n");
+                    writer.write("      isp: " + record.getIsp() + "\n");
+                }
+            }
+        }
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
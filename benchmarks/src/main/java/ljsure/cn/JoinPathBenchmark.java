@@ -0,0 +1,71 @@
+package ljsure.cn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录路径：加载玩家、应用一次登录（IPLog.logPlayerIP）、保存，存储为内存实现
+ * known = true 时玩家和IP都已存在（最常见的重复登录），false 时每次都是新IP
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JoinPathBenchmark {
+    private static final int PLAYERS = 1000;
+
+    @Param({"10", "100"})
+    public int historySize;
+
+    @Param({"true", "false"})
+    public boolean known;
+
+    private IPLog plugin;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        plugin = BenchmarkSupport.loadIPLog();
+        plugin.getConfig().set("data.max-history-size", historySize);
+
+        InMemoryStorageHandler storage = new InMemoryStorageHandler();
+        for (int i = 0; i < PLAYERS; i++) {
+            storage.savePlayerData(BenchmarkSupport.player(i, historySize));
+        }
+        BenchmarkSupport.replaceStorage(plugin, storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.shutdown();
+    }
+
+    @Benchmark
+    public void recordJoin() {
+        int i = next++ % PLAYERS;
+        UUID uuid = BenchmarkSupport.uuid(i);
+        // 已知IP取玩家最新的一条记录，新IP取不会与历史重复的地址
+        byte[] address = known ? BenchmarkSupport.address(i * 8 + historySize - 1) : BenchmarkSupport.address(0x800000 + next);
+        List<JoinWriteBehindQueue.JoinObservation> observations = Collections.singletonList(
+                new JoinWriteBehindQueue.JoinObservation(uuid, BenchmarkSupport.name(i), address, TimeService.currentTimeMillis()));
+        plugin.recordJoins(uuid, observations);
+    }
+}
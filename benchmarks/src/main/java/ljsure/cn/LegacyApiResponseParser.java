@@ -0,0 +1,91 @@
+package ljsure.cn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 改用 ApiResponseReader 之前的解析方式，原样保留用于对比：
+ * 整个响应体读成字符串后用 contains/indexOf 逐个查找字段
+ */
+public final class LegacyApiResponseParser {
+    private LegacyApiResponseParser() {
+    }
+
+    public static Map<String, String> parseAPIResponse(String response, Logger logger) {
+        Map<String, String> ipInfo = new HashMap<>();
+        try {
+            logger.info("[DEBUG] 开始解析API响应");
+
+            // 检查响应是否包含错误信息
+            if (response.contains("\"code\"") && !response.contains("\"code\":\"Success\"")) {
+                // 提取错误代码和消息
+                int codeStart = response.indexOf("\"code\":\"") + 8;
+                int codeEnd = response.indexOf("\"", codeStart);
+                if (codeStart > 7 && codeEnd > codeStart) {
+                    String errorCode = response.substring(codeStart, codeEnd);
+                    logger.warning("[ERROR] API业务错误代码: " + errorCode);
+                }
+
+                int msgStart = response.indexOf("\"msg\":\"") + 7;
+                int msgEnd = response.indexOf("\"", msgStart);
+                if (msgStart > 6 && msgEnd > msgStart) {
+                    String errorMsg = response.substring(msgStart, msgEnd);
+                    logger.warning("[ERROR] API业务错误消息: " + errorMsg);
+                }
+
+                return null;
+            }
+
+            // 解析成功响应
+            if (response.contains("\"country\"")) {
+                int countryStart = response.indexOf("\"country\":\"") + 11;
+                int countryEnd = response.indexOf("\"", countryStart);
+                if (countryStart > 10 && countryEnd > countryStart) {
+                    String country = response.substring(countryStart, countryEnd);
+                    ipInfo.put("location", country);
+                    logger.info("[DEBUG] 解析到国家: " + country);
+                }
+            }
+
+            if (response.contains("\"prov\"")) {
+                int provStart = response.indexOf("\"prov\":\"") + 8;
+                int provEnd = response.indexOf("\"", provStart);
+                if (provStart > 7 && provEnd > provStart) {
+                    String province = response.substring(provStart, provEnd);
+                    String currentLocation = ipInfo.getOrDefault("location", "");
+                    ipInfo.put("location", currentLocation + " " + province);
+                    logger.info("[DEBUG] 解析到省份: " + province);
+                }
+            }
+
+            if (response.contains("\"city\"")) {
+                int cityStart = response.indexOf("\"city\":\"") + 8;
+                int cityEnd = response.indexOf("\"", cityStart);
+                if (cityStart > 7 && cityEnd > cityStart) {
+                    String city = response.substring(cityStart, cityEnd);
+                    String currentLocation = ipInfo.getOrDefault("location", "");
+                    ipInfo.put("location", currentLocation + " " + city);
+                    logger.info("[DEBUG] 解析到城市: " + city);
+                }
+            }
+
+            if (response.contains("\"isp\"")) {
+                int ispStart = response.indexOf("\"isp\":\"") + 7;
+                int ispEnd = response.indexOf("\"", ispStart);
+                if (ispStart > 6 && ispEnd > ispStart) {
+                    String isp = response.substring(ispStart, ispEnd);
+                    ipInfo.put("isp", isp);
+                    logger.info("[DEBUG] 解析到ISP: " + isp);
+                }
+            }
+
+            logger.info("[DEBUG] API响应解析完成，获取到 " + ipInfo.size() + " 个字段");
+
+        } catch (Exception e) {
+            logger.warning("[ERROR] 解析API响应时出错: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return ipInfo;
+    }
+}
@@ -0,0 +1,198 @@
+package ljsure.cn;
+
+import be.seeseemelk.mockbukkit.MockPlugin;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MySQL存储的读写，数据库为内嵌的 MariaDB（与 MySQL 的语法和 INFORMATION_SCHEMA 兼容）
+ * 每次运行使用新的数据目录，预先写入 players 名玩家，每人 historySize 条IP记录
+ * legacy* 为合并成一次查询之前的做法（先 SELECT * 玩家，再 SELECT * 全部历史；按名称查找时再多一次查询），
+ * 与当前实现从同一个连接池借用连接，用于对比往返次数的影响
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MySQLStorageBenchmark {
+    private static final String DATABASE = "iplog_bench";
+    private static final int PAGE_SIZE = 10;
+    private static final String PLAYERS_TABLE = "iplog_players";
+    private static final String IP_HISTORY_TABLE = "iplog_ip_history";
+
+    @Param({"10000"})
+    public int players;
+
+    @Param({"10", "100"})
+    public int historySize;
+
+    private DB db;
+    private IPLogExecutors executors;
+    private MySQLStorageHandler storage;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        db.createDB(DATABASE);
+
+        MockPlugin plugin = BenchmarkSupport.createPlugin();
+        plugin.getConfig().set("storage.mysql.host", "localhost");
+        plugin.getConfig().set("storage.mysql.port", db.getConfiguration().getPort());
+        plugin.getConfig().set("storage.mysql.database", DATABASE);
+        plugin.getConfig().set("storage.mysql.username", "root");
+        plugin.getConfig().set("storage.mysql.password", "");
+        plugin.getConfig().set("storage.mysql.table-prefix", "iplog_");
+        // 测试期间不执行后台清理
+        plugin.getConfig().set("storage.mysql.retention.interval-minutes", 0);
+        plugin.getConfig().set("data.max-history-size", historySize);
+
+        executors = new IPLogExecutors(plugin);
+        storage = new MySQLStorageHandler(plugin, executors);
+        storage.initialize();
+
+        List<PlayerData> batch = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            batch.add(BenchmarkSupport.player(i, historySize));
+            if (batch.size() == 500) {
+                storage.importPlayers(batch);
+                batch.clear();
+            }
+        }
+        storage.importPlayers(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storage.shutdown();
+        executors.shutdown();
+        db.stop();
+        BenchmarkSupport.shutdown();
+    }
+
+    private int nextPlayer() {
+        return next++ % players;
+    }
+
+    @Benchmark
+    public PlayerData loadLatest() {
+        // 登录路径：玩家信息和最新的记录在一次查询中取出
+        return storage.loadPlayerData(BenchmarkSupport.uuid(nextPlayer()), historySize);
+    }
+
+    @Benchmark
+    public PlayerData loadAll() {
+        return storage.loadPlayerData(BenchmarkSupport.uuid(nextPlayer()));
+    }
+
+    @Benchmark
+    public PlayerData findByName() {
+        return storage.findPlayerDataByName(BenchmarkSupport.name(nextPlayer()), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<IPRecord> secondPage() {
+        UUID uuid = BenchmarkSupport.uuid(nextPlayer());
+        List<IPRecord> first = storage.getIPHistoryPage(uuid, null, PAGE_SIZE);
+        return first.isEmpty() ? first
+                : storage.getIPHistoryPage(uuid, HistoryCursor.after(first.get(first.size() - 1)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void saveJoin() {
+        // 一次重复登录：玩家信息和一条IP记录被修改
+        PlayerData data = storage.loadPlayerData(BenchmarkSupport.uuid(nextPlayer()), 1);
+        IPRecord latest = data.getIpHistory().get(0);
+        latest.setLastSeen(latest.getLastSeen() + 1000);
+        data.setLastSeen(latest.getLastSeen());
+        storage.savePlayerData(data);
+    }
+
+    @Benchmark
+    public PlayerData legacyLoadAll() throws SQLException {
+        try (Connection connection = storage.getConnection()) {
+            return legacyLoad(connection, BenchmarkSupport.uuid(nextPlayer()));
+        }
+    }
+
+    @Benchmark
+    public PlayerData legacyFindByName() throws SQLException {
+        try (Connection connection = storage.getConnection()) {
+            String sql = "SELECT uuid FROM " + PLAYERS_TABLE + " WHERE name = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, BenchmarkSupport.name(nextPlayer()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? legacyLoad(connection, UUID.fromString(rs.getString("uuid"))) : null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 旧版本 MySQLStorageHandler.loadPlayerDataInternal：两次查询，历史记录全部取出
+     */
+    private static PlayerData legacyLoad(Connection connection, UUID uuid) throws SQLException {
+        String playerSql = "SELECT * FROM " + PLAYERS_TABLE + " WHERE uuid = ?";
+        try (PreparedStatement playerStmt = connection.prepareStatement(playerSql)) {
+            playerStmt.setString(1, uuid.toString());
+            try (ResultSet rs = playerStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                PlayerData playerData = new PlayerData(uuid.toString(), rs.getString("name"));
+                playerData.setCurrentAddress(rs.getBytes("current_ip"));
+                playerData.setCurrentLocation(rs.getString("current_location"));
+                playerData.setCurrentISP(rs.getString("current_isp"));
+                Timestamp lastSeen = rs.getTimestamp("last_seen");
+                if (lastSeen != null) {
+                    playerData.setLastSeen(lastSeen.getTime());
+                }
+
+                String ipSql = "SELECT * FROM " + IP_HISTORY_TABLE + " WHERE player_uuid = ? ORDER BY last_seen DESC";
+                try (PreparedStatement ipStmt = connection.prepareStatement(ipSql)) {
+                    ipStmt.setString(1, uuid.toString());
+                    try (ResultSet ipRs = ipStmt.executeQuery()) {
+                        while (ipRs.next()) {
+                            IPRecord record = new IPRecord(ipRs.getBytes("ip"),
+                                    ipRs.getTimestamp("first_seen").getTime(),
+                                    ipRs.getTimestamp("last_seen").getTime());
+                            record.setLocation(ipRs.getString("location"));
+                            record.setIsp(ipRs.getString("isp"));
+                            playerData.addIPRecord(record);
+                        }
+                    }
+                }
+                playerData.markClean();
+                return playerData;
+            }
+        }
+    }
+}
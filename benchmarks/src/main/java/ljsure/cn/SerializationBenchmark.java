@@ -0,0 +1,65 @@
+package ljsure.cn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlayerData / IPRecord 与 Map 之间的转换（YAML存储的读写都经过这里）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"1", "10", "100"})
+    public int historySize;
+
+    private PlayerData player;
+    private Map<String, Object> playerMap;
+    private Map<String, Object> recordMap;
+
+    @Setup
+    public void setUp() {
+        player = BenchmarkSupport.player(1, historySize);
+        playerMap = player.serialize();
+        playerMap.put("uuid", player.getUuid());
+        recordMap = player.getIpHistory().get(0).serialize();
+    }
+
+    @Benchmark
+    public Map<String, Object> serializePlayer() {
+        return player.serialize();
+    }
+
+    @Benchmark
+    public PlayerData deserializePlayer() {
+        // deserialize 不修改传入的Map，可以重复使用
+        return PlayerData.deserialize(playerMap);
+    }
+
+    @Benchmark
+    public IPRecord deserializeRecord() {
+        return IPRecord.deserialize(recordMap);
+    }
+
+    @Benchmark
+    public PlayerData fromMap() {
+        // fromMap 会写入 uuid，使用副本
+        return PlayerData.fromMap(player.getUuid(), new HashMap<>(playerMap));
+    }
+}
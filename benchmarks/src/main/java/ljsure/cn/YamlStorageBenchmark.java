@@ -0,0 +1,77 @@
+package ljsure.cn;
+
+import be.seeseemelk.mockbukkit.MockPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YAML存储在不同数据量下的保存和按名称查找
+ * 每次保存都会重写整个数据文件，大数据量时单次保存可能需要数秒，因此使用单次计时
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class YamlStorageBenchmark {
+    private static final int HISTORY_SIZE = 3;
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    private MockPlugin plugin;
+    private YamlStorageHandler storage;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        plugin = BenchmarkSupport.createPlugin();
+        String fileName = "bench-" + players + ".yml";
+        plugin.getConfig().set("storage.data-file", fileName);
+        BenchmarkSupport.writeYamlData(new File(plugin.getDataFolder(), fileName), players, HISTORY_SIZE);
+
+        storage = new YamlStorageHandler(plugin);
+        storage.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storage.shutdown();
+        new File(plugin.getDataFolder(), "bench-" + players + ".yml").delete();
+        BenchmarkSupport.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public PlayerData findByName() {
+        return storage.findPlayerDataByName(BenchmarkSupport.name(next++ % players));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void save() {
+        // 一次登录：更新最新一条记录的时间后保存
+        PlayerData data = storage.loadPlayerData(BenchmarkSupport.uuid(next++ % players));
+        IPRecord latest = data.getIpHistory().get(0);
+        latest.setLastSeen(latest.getLastSeen() + 1);
+        data.setLastSeen(latest.getLastSeen());
+        storage.savePlayerData(data);
+    }
+}
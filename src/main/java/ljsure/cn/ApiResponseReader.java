@@ -0,0 +1,307 @@
+package ljsure.cn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * IP查询API响应的流式JSON读取器
+ * 直接从响应流单次扫描，只提取需要的字段（code、msg，以及顶层或 data 对象中的 country、prov、city、isp），
+ * 其余内容跳过而不创建字符串；正确处理转义字符和嵌套对象
+ */
+public final class ApiResponseReader {
+    public static final int CODE = 0;
+    public static final int MSG = 1;
+    public static final int COUNTRY = 2;
+    public static final int PROV = 3;
+    public static final int CITY = 4;
+    public static final int ISP = 5;
+
+    private static final byte[][] FIELD_NAMES = {
+            ascii("code"), ascii("msg"), ascii("country"), ascii("prov"), ascii("city"), ascii("isp")
+    };
+    private static final byte[] DATA = ascii("data");
+    private static final int MAX_DEPTH = 64;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[4096];
+    private int position;
+    private int limit;
+
+    // 当前字符串（已解码为UTF-8字节），键和值共用
+    private byte[] text = new byte[128];
+    private int textLength;
+
+    private final String[] values = new String[FIELD_NAMES.length];
+
+    private ApiResponseReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取整个响应，返回按字段下标存放的值（未出现的字段为null）
+     */
+    public static String[] read(InputStream in) throws IOException {
+        ApiResponseReader reader = new ApiResponseReader(in);
+        int c = reader.skipWhitespace();
+        if (c != '{') {
+            throw reader.error("响应不是JSON对象");
+        }
+        reader.readObject(1, false);
+        return reader.values;
+    }
+
+    private void readObject(int depth, boolean inData) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw error("嵌套层数过多");
+        }
+        int c = skipWhitespace();
+        if (c == '}') {
+            return;
+        }
+        while (true) {
+            if (c != '"') {
+                throw error("应为字段名");
+            }
+            readString();
+            int field = matchField();
+            boolean isData = depth == 1 && matches(DATA);
+            if (skipWhitespace() != ':') {
+                throw error("应为 ':'");
+            }
+
+            // code/msg 只取顶层；地理字段取顶层或 data 对象中的第一个
+            boolean capture = field >= 0 && values[field] == null
+                    && (field <= MSG ? depth == 1 : depth == 1 || inData);
+            readValue(skipWhitespace(), depth, isData, capture ? field : -1);
+
+            c = skipWhitespace();
+            if (c == ',') {
+                c = skipWhitespace();
+            } else if (c == '}') {
+                return;
+            } else {
+                throw error("应为 ',' 或 '}'");
+            }
+        }
+    }
+
+    private void readArray(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw error("嵌套层数过多");
+        }
+        int c = skipWhitespace();
+        if (c == ']') {
+            return;
+        }
+        while (true) {
+            readValue(c, depth, false, -1);
+            c = skipWhitespace();
+            if (c == ',') {
+                c = skipWhitespace();
+            } else if (c == ']') {
+                return;
+            } else {
+                throw error("应为 ',' 或 ']'");
+            }
+        }
+    }
+
+    private void readValue(int c, int depth, boolean isData, int field) throws IOException {
+        switch (c) {
+            case '{':
+                readObject(depth + 1, isData);
+                break;
+            case '[':
+                readArray(depth + 1);
+                break;
+            case '"':
+                readString();
+                capture(field);
+                break;
+            case -1:
+                throw error("响应意外结束");
+            default:
+                readLiteral(c);
+                // null 视为未出现
+                if (!(textLength == 4 && text[0] == 'n' && text[1] == 'u' && text[2] == 'l' && text[3] == 'l')) {
+                    capture(field);
+                }
+                break;
+        }
+    }
+
+    private void capture(int field) {
+        if (field >= 0) {
+            values[field] = new String(text, 0, textLength, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 读取字符串（开头的引号已读取），结果以UTF-8字节存入 text
+     */
+    private void readString() throws IOException {
+        textLength = 0;
+        while (true) {
+            int b = next();
+            if (b == '"') {
+                return;
+            }
+            if (b == -1) {
+                throw error("字符串未结束");
+            }
+            if (b != '\\') {
+                append(b);
+                continue;
+            }
+
+            int escaped = next();
+            switch (escaped) {
+                case '"': case '\\': case '/':
+                    append(escaped);
+                    break;
+                case 'b': append('\b'); break;
+                case 'f': append('\f'); break;
+                case 'n': append('\n'); break;
+                case 'r': append('\r'); break;
+                case 't': append('\t'); break;
+                case 'u':
+                    appendCodePoint(readUnicodeEscape());
+                    break;
+                default:
+                    throw error("无效的转义字符");
+            }
+        }
+    }
+
+    /**
+     * 读取 \\uXXXX（反斜杠和u已读取），代理对合并为一个码点
+     */
+    private int readUnicodeEscape() throws IOException {
+        int ch = readHex4();
+        if (Character.isHighSurrogate((char) ch)) {
+            if (next() != '\\' || next() != 'u') {
+                throw error("代理对不完整");
+            }
+            int low = readHex4();
+            if (!Character.isLowSurrogate((char) low)) {
+                throw error("代理对不完整");
+            }
+            return Character.toCodePoint((char) ch, (char) low);
+        }
+        return ch;
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw error("无效的 \\u 转义");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private void readLiteral(int first) throws IOException {
+        textLength = 0;
+        append(first);
+        while (true) {
+            int b = peek();
+            if (b == -1 || b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                return;
+            }
+            append(next());
+        }
+    }
+
+    private int matchField() {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if (matches(FIELD_NAMES[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] name) {
+        if (textLength != name.length) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(int b) {
+        if (textLength == text.length) {
+            byte[] grown = new byte[text.length * 2];
+            System.arraycopy(text, 0, grown, 0, textLength);
+            text = grown;
+        }
+        text[textLength++] = (byte) b;
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            append(cp);
+        } else if (cp < 0x800) {
+            append(0xC0 | (cp >> 6));
+            append(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            append(0xE0 | (cp >> 12));
+            append(0x80 | ((cp >> 6) & 0x3F));
+            append(0x80 | (cp & 0x3F));
+        } else {
+            append(0xF0 | (cp >> 18));
+            append(0x80 | ((cp >> 12) & 0x3F));
+            append(0x80 | ((cp >> 6) & 0x3F));
+            append(0x80 | (cp & 0x3F));
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int b = next();
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b;
+            }
+        }
+    }
+
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("JSON格式错误: " + message);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
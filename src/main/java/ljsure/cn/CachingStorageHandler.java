@@ -0,0 +1,308 @@
+package ljsure.cn;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 活跃玩家缓存，包装任意存储实现
+ * 按条目数量（LRU）和访问时间淘汰；写入时先写后端再更新缓存（write-through），
+ * 调用方拿到的始终是副本，修改后必须通过 savePlayerData 才会生效
+ * 玩家退出后只保留 quit-ttl-seconds，短时间内重新登录仍可命中
+ */
+public class CachingStorageHandler implements StorageHandler {
+    private final StorageHandler delegate;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long quitTtlMillis;
+
+    private final LinkedHashMap<UUID, Entry> entries;
+    // 小写玩家名 -> UUID，只包含缓存中的玩家
+    private final Map<String, UUID> nameIndex = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachingStorageHandler(IPLog plugin, StorageHandler delegate) {
+        this.delegate = delegate;
+        this.maxSize = Math.max(1, plugin.getConfig().getInt("data.player-cache.max-size", 1000));
+        this.ttlMillis = Math.max(1, plugin.getConfig().getLong("data.player-cache.ttl-minutes", 30)) * 60L * 1000L;
+        this.quitTtlMillis = Math.max(0, plugin.getConfig().getLong("data.player-cache.quit-ttl-seconds", 300)) * 1000L;
+
+        // accessOrder = true，超出容量时淘汰最久未访问的玩家
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    unindex(eldest.getValue().data);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public StorageHandler getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        delegate.initialize();
+    }
+
+    @Override
+    public void shutdown() {
+        invalidateAll();
+        delegate.shutdown();
+    }
+
+    @Override
+    public void savePlayerData(PlayerData playerData) {
+        delegate.savePlayerData(playerData);
+        if (playerData.getHistoryTotal() > playerData.getIpHistory().size()) {
+            // 只加载了部分IP记录的数据不能当作完整数据缓存，下次读取时从后端重新加载
+            invalidate(UUID.fromString(playerData.getUuid()));
+            return;
+        }
+        // 后端保存成功后 playerData 已是干净状态，缓存它的副本
+        put(playerData.copy(), true);
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+        PlayerData loaded = delegate.loadPlayerData(uuid);
+        if (loaded != null) {
+            put(loaded.copy(), false);
+        }
+        return loaded;
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid, int historyLimit) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+        PlayerData loaded = delegate.loadPlayerData(uuid, historyLimit);
+        // 只缓存完整的数据
+        if (loaded != null && loaded.getHistoryTotal() <= loaded.getIpHistory().size()) {
+            put(loaded.copy(), false);
+        }
+        return loaded;
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        PlayerData cached = findCachedByName(playerName);
+        if (cached != null) {
+            return cached;
+        }
+        PlayerData loaded = delegate.findPlayerDataByName(playerName, historyLimit);
+        if (loaded != null && loaded.getHistoryTotal() <= loaded.getIpHistory().size()) {
+            put(loaded.copy(), false);
+        }
+        return loaded;
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName) {
+        PlayerData cached = findCachedByName(playerName);
+        if (cached != null) {
+            return cached;
+        }
+        PlayerData loaded = delegate.findPlayerDataByName(playerName);
+        if (loaded != null) {
+            put(loaded.copy(), false);
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<IPRecord> getIPHistoryPage(UUID uuid, HistoryCursor after, int limit) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            return HistoryPages.page(cached.getIpHistory(), after, limit);
+        }
+        return delegate.getIPHistoryPage(uuid, after, limit);
+    }
+
+    @Override
+    public HistoryCursor findHistoryCursor(UUID uuid, int skip) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            return HistoryPages.cursorAt(cached.getIpHistory(), skip);
+        }
+        return delegate.findHistoryCursor(uuid, skip);
+    }
+
+    @Override
+    public IPRecord getLastIPRecord(UUID uuid) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            return cached.getIpHistory().isEmpty() ? null : cached.getIpHistory().get(0);
+        }
+        return delegate.getLastIPRecord(uuid);
+    }
+
+    @Override
+    public boolean isIPRecorded(UUID uuid, String ip) {
+        PlayerData cached = get(uuid);
+        if (cached != null) {
+            byte[] address = IPAddresses.toBytes(ip);
+            return address != null && cached.findExistingRecord(address) != null;
+        }
+        return delegate.isIPRecorded(uuid, ip);
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        return delegate.findAccountsByIP(ip, subnet);
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws Exception {
+        // 写入时先写后端，后端的数据总是最新的，导出不经过缓存
+        delegate.exportPlayers(afterUuid, consumer);
+    }
+
+    /**
+     * 玩家登录：恢复正常的保留时间
+     */
+    public void onJoin(UUID uuid) {
+        synchronized (entries) {
+            Entry entry = entries.get(uuid);
+            if (entry != null) {
+                entry.offline = false;
+                entry.expiresAt = TimeService.currentTimeMillis() + ttlMillis;
+            }
+        }
+    }
+
+    /**
+     * 玩家退出：缩短缓存保留时间
+     */
+    public void onQuit(UUID uuid) {
+        synchronized (entries) {
+            Entry entry = entries.get(uuid);
+            if (entry != null) {
+                entry.offline = true;
+                entry.expiresAt = Math.min(entry.expiresAt, TimeService.currentTimeMillis() + quitTtlMillis);
+            }
+        }
+    }
+
+    public void invalidate(UUID uuid) {
+        synchronized (entries) {
+            Entry entry = entries.remove(uuid);
+            if (entry != null) {
+                unindex(entry.data);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            nameIndex.clear();
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public int getMaxSize() { return maxSize; }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private PlayerData findCachedByName(String playerName) {
+        UUID uuid;
+        synchronized (entries) {
+            uuid = nameIndex.get(playerName.toLowerCase());
+        }
+        return uuid != null ? get(uuid) : null;
+    }
+
+    /**
+     * 查询缓存，命中时返回副本并延长保留时间
+     */
+    private PlayerData get(UUID uuid) {
+        long now = TimeService.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(uuid);
+            if (entry != null && entry.expiresAt <= now) {
+                entries.remove(uuid);
+                unindex(entry.data);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            // 退出后缩短的保留时间不因管理员查询而延长
+            if (!entry.offline) {
+                entry.expiresAt = now + ttlMillis;
+            }
+            return entry.data.copy();
+        }
+    }
+
+    /**
+     * 写入缓存；replace 为false（来自读取）时不覆盖已有条目，避免并发读取的旧数据盖过刚保存的数据
+     */
+    private void put(PlayerData data, boolean replace) {
+        UUID uuid = UUID.fromString(data.getUuid());
+        long expiresAt = TimeService.currentTimeMillis() + ttlMillis;
+        synchronized (entries) {
+            if (!replace && entries.containsKey(uuid)) {
+                return;
+            }
+            Entry entry = new Entry(data, expiresAt);
+            Entry previous = entries.put(uuid, entry);
+            if (previous != null) {
+                unindex(previous.data);
+                // 退出后写回的地理信息等不会让离线玩家重新变为活跃
+                if (previous.offline) {
+                    entry.offline = true;
+                    entry.expiresAt = previous.expiresAt;
+                }
+            }
+            if (data.getName() != null) {
+                nameIndex.put(data.getName().toLowerCase(), uuid);
+            }
+        }
+    }
+
+    private void unindex(PlayerData data) {
+        if (data.getName() != null) {
+            nameIndex.remove(data.getName().toLowerCase(), UUID.fromString(data.getUuid()));
+        }
+    }
+
+    private static final class Entry {
+        final PlayerData data;
+        long expiresAt;
+        boolean offline;
+
+        Entry(PlayerData data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ljsure.cn;
+
+/**
+ * 熔断器：连续失败达到阈值（或收到429）时打开，打开期间直接拒绝请求
+ * 冷却时间过后进入半开状态，只放行一个探测请求，成功则关闭，失败则重新打开
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long openCount;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(0, openMillis);
+    }
+
+    /**
+     * 是否允许发出请求；半开状态下只允许一个探测请求
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (TimeService.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * 当前是否处于关闭状态（不会改变状态）
+     */
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 立即打开（用于429等明确要求退避的响应）
+     */
+    public synchronized void trip() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        open();
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && TimeService.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * 距离允许探测请求的剩余时间（毫秒），未打开时为0
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openMillis - (TimeService.currentTimeMillis() - openedAt));
+    }
+
+    private void open() {
+        if (state != State.OPEN) {
+            openCount++;
+        }
+        state = State.OPEN;
+        openedAt = TimeService.currentTimeMillis();
+    }
+}
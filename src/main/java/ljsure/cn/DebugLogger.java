@@ -0,0 +1,54 @@
+package ljsure.cn;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 调试日志：由 debug.enabled / debug.level 控制
+ * 消息以 Supplier 传入，未启用时不会拼接字符串，也不会写控制台
+ */
+public final class DebugLogger {
+    private static volatile DebugLogger instance = new DebugLogger(null, Level.INFO);
+
+    private final Logger logger;
+    private final Level level;
+
+    private DebugLogger(Logger logger, Level level) {
+        this.logger = logger;
+        this.level = level;
+    }
+
+    /**
+     * 根据 debug.* 配置启用调试日志；debug.level 为输出调试信息使用的日志级别
+     */
+    public static void install(FileConfiguration config, Logger logger) {
+        if (!config.getBoolean("debug.enabled", false)) {
+            instance = new DebugLogger(null, Level.INFO);
+            return;
+        }
+
+        Level level;
+        try {
+            level = Level.parse(config.getString("debug.level", "INFO").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("无效的调试日志级别 debug.level，使用默认值 INFO");
+            level = Level.INFO;
+        }
+        instance = new DebugLogger(logger, level);
+    }
+
+    public static boolean isEnabled() {
+        DebugLogger current = instance;
+        return current.logger != null && current.logger.isLoggable(current.level);
+    }
+
+    public static void log(Supplier<String> message) {
+        DebugLogger current = instance;
+        if (current.logger != null && current.logger.isLoggable(current.level)) {
+            current.logger.log(current.level, "[DEBUG] " + message.get());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package ljsure.cn;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 全局IP地理信息缓存（IP -> 位置/ISP），所有玩家共享
+ * 按条目数量限制大小，按访问顺序淘汰（LRU），支持TTL过期，并持久化到数据目录
+ */
+public class GeoCache {
+    private static final int FILE_MAGIC = 0x49504743; // "IPGC"
+    private static final int FILE_VERSION = 1;
+
+    private final JavaPlugin plugin;
+    private final File cacheFile;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile boolean dirty;
+
+    public GeoCache(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.maxSize = Math.max(1, plugin.getConfig().getInt("api.cache.max-size", 50000));
+        this.ttlMillis = plugin.getConfig().getLong("api.cache.ttl-hours", 168) * 60L * 60L * 1000L;
+        this.cacheFile = new File(plugin.getDataFolder(),
+                plugin.getConfig().getString("api.cache.file", "geo-cache.dat"));
+
+        // accessOrder = true，超出容量时淘汰最久未访问的条目
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回null
+     */
+    public Map<String, String> get(String ip) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(ip);
+            if (entry != null && isExpired(entry, TimeService.currentTimeMillis())) {
+                entries.remove(ip);
+                dirty = true;
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.toMap();
+    }
+
+    /**
+     * 写入一次成功的查询结果
+     */
+    public void put(String ip, Map<String, String> ipInfo) {
+        if (ip == null || ipInfo == null) {
+            return;
+        }
+        Entry entry = new Entry(ipInfo.get("location"), ipInfo.get("isp"), TimeService.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(ip, entry);
+        }
+        dirty = true;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public int getMaxSize() { return maxSize; }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    /**
+     * 从数据目录加载缓存文件，跳过已过期的条目
+     */
+    public void load() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        long now = TimeService.currentTimeMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(cacheFile))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                plugin.getLogger().warning("IP缓存文件格式不兼容，已忽略: " + cacheFile.getName());
+                return;
+            }
+
+            int count = in.readInt();
+            synchronized (entries) {
+                for (int i = 0; i < count; i++) {
+                    String ip = in.readUTF();
+                    Entry entry = new Entry(readNullableUTF(in), readNullableUTF(in), in.readLong());
+                    if (!isExpired(entry, now)) {
+                        entries.put(ip, entry);
+                        loaded++;
+                    }
+                }
+            }
+            plugin.getLogger().info("已加载IP缓存: " + loaded + " 条");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "加载IP缓存文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将缓存写入数据目录（先写临时文件再替换，避免写入中断损坏文件）
+     */
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+
+        Map<String, Entry> snapshot;
+        synchronized (entries) {
+            snapshot = new LinkedHashMap<>(entries);
+            dirty = false;
+        }
+
+        long now = TimeService.currentTimeMillis();
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+
+                Iterator<Map.Entry<String, Entry>> it = snapshot.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (isExpired(it.next().getValue(), now)) {
+                        it.remove();
+                    }
+                }
+
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    writeNullableUTF(out, e.getValue().location);
+                    writeNullableUTF(out, e.getValue().isp);
+                    out.writeLong(e.getValue().storedAt);
+                }
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            plugin.getLogger().log(Level.WARNING, "保存IP缓存文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMillis > 0 && now - entry.storedAt > ttlMillis;
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static final class Entry {
+        final String location;
+        final String isp;
+        final long storedAt;
+
+        Entry(String location, String isp, long storedAt) {
+            this.location = location;
+            this.isp = isp;
+            this.storedAt = storedAt;
+        }
+
+        Map<String, String> toMap() {
+            Map<String, String> map = new HashMap<>();
+            if (location != null) map.put("location", location);
+            if (isp != null) map.put("isp", isp);
+            return map;
+        }
+    }
+}
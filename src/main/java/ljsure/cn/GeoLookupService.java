@@ -0,0 +1,164 @@
+package ljsure.cn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IP地理信息查询服务
+ * 按 geo.resolvers 配置的顺序依次尝试各个数据源（如先本地数据库、再API），前一个查不到时交给下一个
+ * 远程结果写入全局缓存；同一IP的并发查询合并为一个请求
+ */
+public class GeoLookupService {
+    private final IPLog plugin;
+    private final GeoCache geoCache;
+    private final List<GeoResolver> resolvers;
+    private final HttpGeoResolver httpResolver;
+    private final LocalGeoResolver localResolver;
+
+    // 正在进行中的查询，同一IP共享一个 future
+    private final ConcurrentHashMap<String, CompletableFuture<Map<String, String>>> inFlight = new ConcurrentHashMap<>();
+
+    public GeoLookupService(IPLog plugin, GeoCache geoCache) {
+        this.plugin = plugin;
+        this.geoCache = geoCache;
+
+        List<String> names = plugin.getConfig().getStringList("geo.resolvers");
+        if (names.isEmpty()) {
+            names = Collections.singletonList("api");
+        }
+
+        List<GeoResolver> chain = new ArrayList<>();
+        HttpGeoResolver http = null;
+        LocalGeoResolver local = null;
+        for (String name : names) {
+            switch (name.toLowerCase()) {
+                case "api":
+                    if (http == null) {
+                        http = new HttpGeoResolver(plugin);
+                        chain.add(http);
+                    }
+                    break;
+                case "local":
+                    if (local == null) {
+                        local = new LocalGeoResolver(plugin);
+                        local.load();
+                        chain.add(local);
+                    }
+                    break;
+                default:
+                    plugin.getLogger().warning("未知的IP信息来源: " + name);
+                    break;
+            }
+        }
+        this.resolvers = Collections.unmodifiableList(chain);
+        this.httpResolver = http;
+        this.localResolver = local;
+    }
+
+    /**
+     * 查询IP信息：先查全局缓存，未命中时按顺序尝试各个数据源，远程结果写回缓存
+     * 所有来源都失败时 future 的结果为null
+     */
+    public CompletableFuture<Map<String, String>> lookup(String ip) {
+        if (geoCache != null) {
+            Map<String, String> cached = geoCache.get(ip);
+            if (cached != null) {
+                DebugLogger.log(() -> "IP " + ip + " 命中缓存，跳过API查询");
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        CompletableFuture<Map<String, String>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> existing = inFlight.putIfAbsent(ip, created);
+        if (existing != null) {
+            DebugLogger.log(() -> "IP " + ip + " 已有进行中的查询，合并请求");
+            return existing;
+        }
+
+        resolve(ip, IPAddresses.toBytes(ip), 0).whenComplete((ipInfo, error) -> {
+            inFlight.remove(ip, created);
+            if (error != null) {
+                plugin.getLogger().warning("[ERROR] 查询IP信息时发生未知错误: " + error.getMessage());
+                created.complete(null);
+                return;
+            }
+            created.complete(ipInfo);
+        });
+        return created;
+    }
+
+    /**
+     * 不发起网络请求的查询：全局缓存，以及排在第一个远程来源之前的本地来源
+     */
+    public Map<String, String> getCached(String ip) {
+        Map<String, String> cached = geoCache != null ? geoCache.get(ip) : null;
+        if (cached != null) {
+            return cached;
+        }
+        byte[] address = null;
+        for (GeoResolver resolver : resolvers) {
+            if (!resolver.isLocal()) {
+                break;
+            }
+            if (address == null) {
+                address = IPAddresses.toBytes(ip);
+                if (address == null) {
+                    return null;
+                }
+            }
+            Map<String, String> ipInfo = resolver.resolve(ip, address).getNow(null);
+            if (ipInfo != null) {
+                return ipInfo;
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<Map<String, String>> resolve(String ip, byte[] address, int index) {
+        if (index >= resolvers.size() || address == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        GeoResolver resolver = resolvers.get(index);
+        return resolver.resolve(ip, address).thenCompose(ipInfo -> {
+            if (ipInfo == null) {
+                return resolve(ip, address, index + 1);
+            }
+            if (!resolver.isLocal() && geoCache != null) {
+                geoCache.put(ip, ipInfo);
+            }
+            return CompletableFuture.completedFuture(ipInfo);
+        });
+    }
+
+    public List<GeoResolver> getResolvers() {
+        return resolvers;
+    }
+
+    /**
+     * API数据源，未在 geo.resolvers 中启用时为null
+     */
+    public HttpGeoResolver getHttpResolver() {
+        return httpResolver;
+    }
+
+    /**
+     * 本地数据库，未在 geo.resolvers 中启用时为null
+     */
+    public LocalGeoResolver getLocalResolver() {
+        return localResolver;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public void shutdown() {
+        for (GeoResolver resolver : resolvers) {
+            resolver.close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ljsure.cn;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * IP地理信息来源，结果为包含 "location" / "isp" 的Map，查不到或失败时为null
+ */
+public interface GeoResolver {
+
+    /**
+     * 配置中 geo.resolvers 使用的名称
+     */
+    String getName();
+
+    CompletableFuture<Map<String, String>> resolve(String ip, byte[] address);
+
+    /**
+     * 是否为本地数据源；本地结果可以在登录时同步取得，也不需要写入缓存
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,114 @@
+package ljsure.cn;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地理信息补全的延迟重试队列
+ * API被限流或熔断时，缺少位置/ISP的记录放入此队列，熔断器关闭后由定时任务按令牌数分批重新补全
+ */
+public class GeoRetryQueue {
+    private final IPLog plugin;
+    private final int capacity;
+    private final int maxAttempts;
+    private final int maxBatch;
+
+    // 按 玩家+IP 去重，保持加入顺序
+    private final LinkedHashMap<Key, Integer> pending = new LinkedHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    public GeoRetryQueue(IPLog plugin) {
+        this.plugin = plugin;
+        this.capacity = Math.max(1, plugin.getConfig().getInt("api.retry.queue-capacity", 1000));
+        this.maxAttempts = Math.max(1, plugin.getConfig().getInt("api.retry.max-attempts", 5));
+        this.maxBatch = Math.max(1, plugin.getConfig().getInt("api.retry.batch-size", 50));
+    }
+
+    /**
+     * 加入一条待补全的记录，attempts 为已失败的次数；超过最大次数或队列已满时丢弃
+     */
+    public void offer(UUID uuid, byte[] address, int attempts) {
+        Key key = new Key(uuid, IPAddresses.format(address), address);
+        synchronized (pending) {
+            if (attempts > maxAttempts || (!pending.containsKey(key) && pending.size() >= capacity)) {
+                dropped.incrementAndGet();
+                return;
+            }
+            pending.merge(key, attempts, Math::max);
+        }
+    }
+
+    /**
+     * 熔断器未打开时，按当前可用令牌数取出一批记录重新补全；半开状态只取一条作为探测
+     */
+    public void process() {
+        HttpGeoResolver httpResolver = plugin.getGeoLookup() != null ? plugin.getGeoLookup().getHttpResolver() : null;
+        if (httpResolver == null) {
+            return;
+        }
+        CircuitBreaker breaker = httpResolver.getCircuitBreaker();
+        CircuitBreaker.State state = breaker != null ? breaker.getState() : CircuitBreaker.State.CLOSED;
+        if (state == CircuitBreaker.State.OPEN) {
+            return;
+        }
+
+        int budget = state == CircuitBreaker.State.HALF_OPEN ? 1
+                : (int) Math.min(maxBatch, Math.max(1, httpResolver.getAvailablePermits()));
+        List<Map.Entry<Key, Integer>> batch = new ArrayList<>(Math.min(budget, 64));
+        synchronized (pending) {
+            Iterator<Map.Entry<Key, Integer>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < budget) {
+                Map.Entry<Key, Integer> entry = it.next();
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                it.remove();
+            }
+        }
+
+        // 再次失败时由 enrichAsync 以递增的次数重新放回队列
+        for (Map.Entry<Key, Integer> entry : batch) {
+            retried.incrementAndGet();
+            plugin.enrichAsync(entry.getKey().uuid, entry.getKey().address, entry.getValue());
+        }
+    }
+
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getDropped() { return dropped.get(); }
+    public long getRetried() { return retried.get(); }
+
+    private static final class Key {
+        final UUID uuid;
+        final String ip;
+        final byte[] address;
+
+        Key(UUID uuid, String ip, byte[] address) {
+            this.uuid = uuid;
+            this.ip = ip;
+            this.address = address;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return uuid.equals(other.uuid) && ip.equals(other.ip);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uuid, ip);
+        }
+    }
+}
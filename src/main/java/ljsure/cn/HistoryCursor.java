@@ -0,0 +1,43 @@
+package ljsure.cn;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * IP记录分页游标：记录按 (最后使用时间, 地址) 倒序排列，游标指向上一页的最后一条
+ * 下一页从严格排在游标之后的记录开始，翻页时不需要跳过前面的行
+ */
+public final class HistoryCursor {
+    /**
+     * 分页使用的排序：最后使用时间倒序，相同时按地址倒序
+     */
+    public static final Comparator<IPRecord> ORDER = (a, b) -> {
+        int c = Long.compare(b.getLastSeen(), a.getLastSeen());
+        return c != 0 ? c : Arrays.compareUnsigned(b.getAddress(), a.getAddress());
+    };
+
+    private final long lastSeen;
+    private final byte[] address;
+
+    public HistoryCursor(long lastSeen, byte[] address) {
+        this.lastSeen = lastSeen;
+        this.address = address;
+    }
+
+    public static HistoryCursor after(IPRecord record) {
+        return new HistoryCursor(record.getLastSeen(), record.getAddress());
+    }
+
+    public long getLastSeen() { return lastSeen; }
+    public byte[] getAddress() { return address; }
+
+    /**
+     * 记录是否排在游标之后
+     */
+    public boolean precedes(IPRecord record) {
+        if (record.getLastSeen() != lastSeen) {
+            return record.getLastSeen() < lastSeen;
+        }
+        return Arrays.compareUnsigned(record.getAddress(), address) < 0;
+    }
+}
@@ -0,0 +1,36 @@
+package ljsure.cn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存中的IP记录分页，供没有原生分页查询的存储使用
+ */
+public final class HistoryPages {
+
+    private HistoryPages() {
+    }
+
+    public static List<IPRecord> page(List<IPRecord> history, HistoryCursor after, int limit) {
+        List<IPRecord> candidates = new ArrayList<>(history.size());
+        for (IPRecord record : history) {
+            if (after == null || after.precedes(record)) {
+                candidates.add(record);
+            }
+        }
+        candidates.sort(HistoryCursor.ORDER);
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    /**
+     * 按分页顺序第 skip 条记录（从1数起）之后的游标，记录不足时返回null
+     */
+    public static HistoryCursor cursorAt(List<IPRecord> history, int skip) {
+        if (skip < 1 || skip > history.size()) {
+            return null;
+        }
+        List<IPRecord> sorted = new ArrayList<>(history);
+        sorted.sort(HistoryCursor.ORDER);
+        return HistoryCursor.after(sorted.get(skip - 1));
+    }
+}
@@ -0,0 +1,296 @@
+package ljsure.cn;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通过 ipplus360 API 查询IP地理信息
+ * 使用非阻塞的 HttpClient 复用连接发送请求，响应体由 HttpClient 自己的线程完整读入内存后，
+ * 在插件的 geo 线程池中解析；geo 线程池满时由提交者执行，不能作为 HttpClient 的执行器，否则读响应的线程会互相等待
+ * 请求经过令牌桶限流和熔断器，被拒绝的查询直接返回null，由调用方放入重试队列
+ */
+public class HttpGeoResolver implements GeoResolver {
+    private static final String API_URL = "https://api.ipplus360.com/ip/geo/v1/street/biz/";
+    private static final LatencyHistogram REQUEST_LATENCY = Metrics.histogram("geo.api.request", "IP查询API请求的耗时");
+
+    private final IPLog plugin;
+    private final HttpClient httpClient;
+    private final Duration timeout;
+
+    // 请求地址在启动时拼好，调试输出使用隐藏了密钥的版本
+    private final String requestPrefix;
+    private final String maskedRequestPrefix;
+
+    private final TokenBucket rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong tooManyRequests = new AtomicLong();
+
+    public HttpGeoResolver(IPLog plugin) {
+        this.plugin = plugin;
+        this.timeout = Duration.ofMillis(plugin.getConfig().getInt("api.timeout", 5000));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        String apiKey = plugin.getConfig().getString("api.key");
+        String apiUrl = plugin.getConfig().getString("api.url", API_URL);
+        this.requestPrefix = apiUrl + "?key=" + apiKey + "&ip=";
+        this.maskedRequestPrefix = apiUrl + "?key=" + (apiKey != null ?
+                apiKey.substring(0, Math.min(5, apiKey.length())) + "..." : "null") + "&ip=";
+
+        if (plugin.getConfig().getBoolean("api.rate-limit.enabled", true)) {
+            rateLimiter = new TokenBucket(plugin.getConfig().getDouble("api.rate-limit.permits-per-second", 5.0),
+                    plugin.getConfig().getInt("api.rate-limit.burst", 10));
+        } else {
+            rateLimiter = null;
+        }
+        if (plugin.getConfig().getBoolean("api.circuit-breaker.enabled", true)) {
+            circuitBreaker = new CircuitBreaker(plugin.getConfig().getInt("api.circuit-breaker.failure-threshold", 5),
+                    plugin.getConfig().getLong("api.circuit-breaker.open-seconds", 60) * 1000L);
+        } else {
+            circuitBreaker = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "api";
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> resolve(String ip, byte[] address) {
+        // 先取令牌再询问熔断器，避免半开状态的探测名额被限流占住
+        if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+            throttled.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            shortCircuited.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        requests.incrementAndGet();
+        return queryIPInfo(ip);
+    }
+
+    /**
+     * 当前可立即发出的请求数
+     */
+    public double getAvailablePermits() {
+        return rateLimiter != null ? rateLimiter.getAvailableTokens() : Double.MAX_VALUE;
+    }
+
+    public TokenBucket getRateLimiter() { return rateLimiter; }
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+    public long getRequests() { return requests.get(); }
+    public long getSuccesses() { return successes.get(); }
+    public long getFailures() { return failures.get(); }
+    public long getThrottled() { return throttled.get(); }
+    public long getShortCircuited() { return shortCircuited.get(); }
+    public long getTooManyRequests() { return tooManyRequests.get(); }
+
+    private void recordSuccess() {
+        successes.incrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    private void recordFailure(int responseCode) {
+        failures.incrementAndGet();
+        if (responseCode == 429) {
+            tooManyRequests.incrementAndGet();
+        }
+        if (circuitBreaker == null) {
+            return;
+        }
+        boolean wasClosed = circuitBreaker.isClosed();
+        if (responseCode == 429) {
+            circuitBreaker.trip();
+        } else {
+            circuitBreaker.recordFailure();
+        }
+        if (wasClosed && !circuitBreaker.isClosed()) {
+            plugin.getLogger().warning("IP查询API连续失败，暂停请求 " +
+                    plugin.getConfig().getLong("api.circuit-breaker.open-seconds", 60) + " 秒");
+        }
+    }
+
+    private CompletableFuture<Map<String, String>> queryIPInfo(String ip) {
+        // 构建完整的请求URL
+        String query = ip + "&coordsys=WGS84&area=multi";
+        String fullUrl = requestPrefix + query;
+        DebugLogger.log(() -> "开始查询IP信息: " + maskedRequestPrefix + query);
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(fullUrl))
+                    .timeout(timeout)
+                    .header("User-Agent", "Minecraft-IPLog-Plugin/1.0")
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("[ERROR] API地址无效: " + e.getMessage());
+            recordFailure(0);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = REQUEST_LATENCY.start();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handleAsync((response, error) -> {
+                    if (error != null) {
+                        REQUEST_LATENCY.stop(start);
+                        Metrics.counter("geo.api.responses", "API响应数（按HTTP状态码）", "status", "error").increment();
+                        logRequestError(error);
+                        recordFailure(0);
+                        return null;
+                    }
+                    Map<String, String> ipInfo = handleResponse(response);
+                    // 包括读取和解析响应体的时间
+                    REQUEST_LATENCY.stop(start);
+                    Metrics.counter("geo.api.responses", "API响应数（按HTTP状态码）", "status",
+                            String.valueOf(response.statusCode())).increment();
+                    if (ipInfo != null) {
+                        recordSuccess();
+                    } else {
+                        recordFailure(response.statusCode());
+                    }
+                    return ipInfo;
+                }, plugin.getExecutors().geo());
+    }
+
+    private Map<String, String> handleResponse(HttpResponse<byte[]> response) {
+        int responseCode = response.statusCode();
+        DebugLogger.log(() -> "HTTP响应码: " + responseCode);
+
+        if (responseCode == 200) {
+            // 成功响应
+            try (InputStream body = new ByteArrayInputStream(response.body())) {
+                return parseAPIResponse(body);
+            } catch (IOException e) {
+                plugin.getLogger().warning("[ERROR] 解析API响应时出错: " + e.getMessage());
+                return null;
+            }
+        }
+
+        // 错误响应
+        plugin.getLogger().warning("[ERROR] API返回错误代码: " + responseCode);
+        String errorBody = response.body() != null ? new String(response.body(), StandardCharsets.UTF_8) : null;
+        if (errorBody != null && !errorBody.isEmpty()) {
+            plugin.getLogger().warning("[ERROR] API错误响应体: " + errorBody);
+        } else {
+            plugin.getLogger().warning("[ERROR] 无错误响应体");
+        }
+
+        // 根据不同的HTTP状态码提供具体的错误信息
+        switch (responseCode) {
+            case 400:
+                plugin.getLogger().warning("[ERROR] 400 Bad Request - 请求参数错误");
+                break;
+            case 401:
+                plugin.getLogger().warning("[ERROR] 401 Unauthorized - 认证失败");
+                break;
+            case 403:
+                plugin.getLogger().warning("[ERROR] 403 Forbidden - 访问被拒绝，可能的原因:");
+                plugin.getLogger().warning("[ERROR]   - API密钥无效或已过期");
+                plugin.getLogger().warning("[ERROR]   - 账户余额不足");
+                plugin.getLogger().warning("[ERROR]   - IP地址不在白名单中");
+                plugin.getLogger().warning("[ERROR]   - 请求频率超限");
+                break;
+            case 404:
+                plugin.getLogger().warning("[ERROR] 404 Not Found - API端点不存在");
+                break;
+            case 429:
+                plugin.getLogger().warning("[ERROR] 429 Too Many Requests - 请求频率超限");
+                break;
+            case 500:
+                plugin.getLogger().warning("[ERROR] 500 Internal Server Error - 服务器内部错误");
+                break;
+            case 503:
+                plugin.getLogger().warning("[ERROR] 503 Service Unavailable - 服务不可用");
+                break;
+            default:
+                plugin.getLogger().warning("[ERROR] 未知HTTP错误: " + responseCode);
+                break;
+        }
+        return null;
+    }
+
+    private void logRequestError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpConnectTimeoutException || cause instanceof HttpTimeoutException) {
+            plugin.getLogger().warning("[ERROR] 连接API超时: " + cause.getMessage());
+        } else if (cause instanceof java.net.ConnectException) {
+            plugin.getLogger().warning("[ERROR] 无法连接API主机: " + cause.getMessage());
+        } else if (cause instanceof java.io.IOException) {
+            plugin.getLogger().warning("[ERROR] 网络IO错误: " + cause.getMessage());
+        } else {
+            plugin.getLogger().warning("[ERROR] 查询IP信息时发生未知错误: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * 单次扫描响应流，取出业务状态和地理字段
+     */
+    Map<String, String> parseAPIResponse(InputStream body) throws IOException {
+        String[] fields = ApiResponseReader.read(body);
+
+        // 检查响应是否包含错误信息
+        String code = fields[ApiResponseReader.CODE];
+        if (code != null && !code.equals("Success")) {
+            plugin.getLogger().warning("[ERROR] API业务错误代码: " + code);
+            if (fields[ApiResponseReader.MSG] != null) {
+                plugin.getLogger().warning("[ERROR] API业务错误消息: " + fields[ApiResponseReader.MSG]);
+            }
+            return null;
+        }
+
+        Map<String, String> ipInfo = new HashMap<>();
+        String country = fields[ApiResponseReader.COUNTRY];
+        String province = fields[ApiResponseReader.PROV];
+        String city = fields[ApiResponseReader.CITY];
+        String isp = fields[ApiResponseReader.ISP];
+
+        if (country != null || province != null || city != null) {
+            StringBuilder location = new StringBuilder();
+            for (String part : new String[]{country, province, city}) {
+                if (part != null && !part.isEmpty()) {
+                    if (location.length() > 0) {
+                        location.append(' ');
+                    }
+                    location.append(part);
+                }
+            }
+            ipInfo.put("location", location.toString());
+        }
+        if (isp != null && !isp.isEmpty()) {
+            ipInfo.put("isp", isp);
+        }
+
+        DebugLogger.log(() -> "API响应解析完成: 位置=" + ipInfo.get("location") + ", ISP=" + ipInfo.get("isp"));
+        return ipInfo;
+    }
+}
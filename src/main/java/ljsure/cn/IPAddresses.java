@@ -0,0 +1,224 @@
+package ljsure.cn;
+
+import java.net.InetAddress;
+
+/**
+ * IP地址工具：校验IP字面量，在文本与16字节形式之间转换，计算 IPv4 /24 与 IPv6 /48 网段
+ * 只解析字面量，不会触发DNS查询
+ */
+public final class IPAddresses {
+
+    private IPAddresses() {
+    }
+
+    /**
+     * 解析IP字面量，非法输入返回null
+     * 完全在本地按字面量规则解析（IPv4 点分十进制；IPv6 十六进制分组，支持 :: 缩写和末尾的IPv4），
+     * 不调用 InetAddress.getByName，因此在主线程上校验用户输入也不会阻塞
+     */
+    public static byte[] parse(String ip) {
+        if (ip == null || ip.isEmpty() || ip.length() > 45) {
+            return null;
+        }
+        return ip.indexOf(':') >= 0 ? parseIPv6(ip) : parseIPv4(ip, 0, ip.length());
+    }
+
+    /**
+     * 解析 ip[from, to) 中的点分十进制IPv4地址，每段 0-255、最多3位数字
+     */
+    private static byte[] parseIPv4(String ip, int from, int to) {
+        byte[] bytes = new byte[4];
+        int part = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? ip.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                if (++digits > 3) {
+                    return null;
+                }
+                value = value * 10 + (c - '0');
+            } else if (c == '.') {
+                if (digits == 0 || value > 255 || part >= 4) {
+                    return null;
+                }
+                bytes[part++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? bytes : null;
+    }
+
+    private static byte[] parseIPv6(String ip) {
+        int compress = ip.indexOf("::");
+        if (compress >= 0 && ip.indexOf("::", compress + 1) >= 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[16];
+        int count = 0;
+        // :: 之前的分组写在前面，之后的分组先写在后面，最后移到末尾
+        int compressAt = -1;
+        int i = 0;
+        int length = ip.length();
+        if (compress == 0) {
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < length) {
+            int end = i;
+            while (end < length && ip.charAt(end) != ':') {
+                end++;
+            }
+            if (end == i) {
+                return null;
+            }
+
+            if (end == length && ip.indexOf('.', i) >= 0) {
+                // 末尾的IPv4形式，如 ::ffff:1.2.3.4
+                byte[] v4 = parseIPv4(ip, i, end);
+                if (v4 == null || count > 12) {
+                    return null;
+                }
+                System.arraycopy(v4, 0, bytes, count, 4);
+                count += 4;
+                i = end;
+                break;
+            }
+
+            if (end - i > 4 || count > 14) {
+                return null;
+            }
+            int value = 0;
+            for (int k = i; k < end; k++) {
+                int digit = Character.digit(ip.charAt(k), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = (value << 4) | digit;
+            }
+            bytes[count++] = (byte) (value >>> 8);
+            bytes[count++] = (byte) value;
+
+            if (end == length) {
+                i = end;
+            } else if (end == compress) {
+                compressAt = count;
+                i = end + 2;
+            } else {
+                i = end + 1;
+                if (i == length) {
+                    // 以单个 : 结尾
+                    return null;
+                }
+            }
+        }
+
+        if (compressAt < 0) {
+            return count == 16 ? bytes : null;
+        }
+        // :: 至少代表一个全零分组
+        if (count > 14) {
+            return null;
+        }
+        int tail = count - compressAt;
+        System.arraycopy(bytes, compressAt, bytes, 16 - tail, tail);
+        for (int k = compressAt; k < 16 - tail; k++) {
+            bytes[k] = 0;
+        }
+        return bytes;
+    }
+
+    public static boolean isValid(String ip) {
+        return parse(ip) != null;
+    }
+
+    /**
+     * 转换为16字节形式（IPv4 使用 IPv4-mapped 地址），非法输入返回null
+     */
+    public static byte[] toBytes(String ip) {
+        byte[] bytes = parse(ip);
+        return bytes != null ? toMapped(bytes) : null;
+    }
+
+    public static byte[] toBytes(InetAddress address) {
+        return toMapped(address.getAddress());
+    }
+
+    /**
+     * 16字节地址转为显示用的文本，IPv4-mapped 地址显示为点分十进制
+     */
+    public static String format(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        if (isIPv4Mapped(address)) {
+            return (address[12] & 0xFF) + "." + (address[13] & 0xFF) + "." + (address[14] & 0xFF) + "." + (address[15] & 0xFF);
+        }
+        StringBuilder builder = new StringBuilder(39);
+        for (int i = 0; i < 16; i += 2) {
+            if (i > 0) {
+                builder.append(':');
+            }
+            builder.append(group(address, i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 地址所在网段的标识，如 1.2.3.0/24 或 2001:db8:0::/48
+     */
+    public static String subnetOf(byte[] address) {
+        if (isIPv4Mapped(address)) {
+            return (address[12] & 0xFF) + "." + (address[13] & 0xFF) + "." + (address[14] & 0xFF) + ".0/24";
+        }
+        return group(address, 0) + ":" + group(address, 2) + ":" + group(address, 4) + "::/48";
+    }
+
+    public static String subnetOf(String ip) {
+        byte[] address = toBytes(ip);
+        return address != null ? subnetOf(address) : null;
+    }
+
+    /**
+     * 网段的首尾地址 {最小, 最大}，用于二进制列上的范围查询
+     */
+    public static byte[][] subnetRange(byte[] address) {
+        int prefixBytes = isIPv4Mapped(address) ? 15 : 6;
+        byte[] low = new byte[16];
+        byte[] high = new byte[16];
+        System.arraycopy(address, 0, low, 0, prefixBytes);
+        System.arraycopy(address, 0, high, 0, prefixBytes);
+        for (int i = prefixBytes; i < 16; i++) {
+            high[i] = (byte) 0xFF;
+        }
+        return new byte[][]{low, high};
+    }
+
+    private static boolean isIPv4Mapped(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xFF && address[11] == (byte) 0xFF;
+    }
+
+    private static byte[] toMapped(byte[] bytes) {
+        if (bytes.length == 16) {
+            return bytes;
+        }
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xFF;
+        mapped[11] = (byte) 0xFF;
+        System.arraycopy(bytes, 0, mapped, 12, 4);
+        return mapped;
+    }
+
+    private static String group(byte[] bytes, int offset) {
+        return Integer.toHexString(((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF));
+    }
+}
@@ -5,23 +5,48 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 public class IPLog extends JavaPlugin implements Listener {
+    private static final LatencyHistogram JOIN_EVENT = Metrics.histogram("join.event", "登录事件在主线程上的处理耗时");
+    private static final LatencyHistogram RECORD_JOINS = Metrics.histogram("join.record", "加载、记录并保存一组登录的耗时");
+    private static final LatencyHistogram LOG_IP = Metrics.histogram("join.log_ip", "把一次登录应用到玩家数据的耗时");
+    private static final Metrics.Counter REQUEUED_JOINS = Metrics.counter("join.requeued", "主线程提交被拒绝后放回写入缓冲的登录记录数");
 
     private FileConfiguration config;
     private StorageHandler storageHandler;
-
-    private static final String API_URL = "https://api.ipplus360.com/ip/geo/v1/street/biz/";
+    private CachingStorageHandler playerCache;
+    private StorageMigrator storageMigrator;
+    private MetricsExporter metricsExporter;
+    private GeoCache geoCache;
+    private GeoLookupService geoLookup;
+    private GeoRetryQueue geoRetryQueue;
+    private JoinWriteBehindQueue writeBehindQueue;
+    private boolean writeBehindEnabled;
+    private LoginPrefetcher loginPrefetcher;
+
+    // 插件自己的有界线程池
+    private IPLogExecutors executors;
+    // 玩家数据更新：同一玩家串行，不同玩家并行
+    private KeyedExecutor<UUID> playerUpdates;
+
+    // 尚未写回的地理信息补全任务
+    private final Set<CompletableFuture<Void>> pendingEnrichments = ConcurrentHashMap.newKeySet();
 
     @Override
     public void onEnable() {
@@ -31,6 +56,10 @@ public class IPLog extends JavaPlugin implements Listener {
 
         saveDefaultConfig();
         config = getConfig();
+        TimeService.install(config, getLogger());
+        DebugLogger.install(config, getLogger());
+        Metrics.install(config);
+        executors = new IPLogExecutors(this);
 
         // 初始化存储系统
         if (!initializeStorage()) {
@@ -39,6 +68,43 @@ public class IPLog extends JavaPlugin implements Listener {
             return;
         }
 
+        playerUpdates = new KeyedExecutor<>(executors.storage());
+
+        // 初始化IP地理信息缓存
+        if (config.getBoolean("api.cache.enabled", true)) {
+            geoCache = new GeoCache(this);
+            geoCache.load();
+            long saveMinutes = config.getLong("api.cache.save-interval-minutes", 10);
+            if (saveMinutes > 0) {
+                executors.scheduleAtFixedRate(executors.geo(), "保存IP信息缓存", geoCache::save, saveMinutes, TimeUnit.MINUTES);
+            }
+        }
+        geoLookup = new GeoLookupService(this, geoCache);
+
+        // 被限流或熔断的查询稍后重试
+        if (config.getBoolean("api.retry.enabled", true)) {
+            geoRetryQueue = new GeoRetryQueue(this);
+            long retrySeconds = Math.max(1, config.getLong("api.retry.interval-seconds", 30));
+            executors.scheduleAtFixedRate(executors.geo(), "重试IP查询", geoRetryQueue::process, retrySeconds, TimeUnit.SECONDS);
+        }
+
+        // 初始化登录记录写入缓冲，关闭定时写入时写线程仍用于重新提交被拒绝的登录记录
+        writeBehindQueue = new JoinWriteBehindQueue(this);
+        writeBehindEnabled = config.getBoolean("data.write-behind.enabled", true);
+        if (writeBehindEnabled) {
+            writeBehindQueue.start();
+        }
+
+        // 在登录前阶段提前加载玩家数据和查询IP信息
+        if (config.getBoolean("data.prefetch.enabled", true)) {
+            loginPrefetcher = new LoginPrefetcher(this, playerUpdates);
+            loginPrefetcher.start();
+        }
+
+        storageMigrator = new StorageMigrator(this);
+        metricsExporter = new MetricsExporter(this, executors);
+        metricsExporter.start();
+
         getServer().getPluginManager().registerEvents(this, this);
         Objects.requireNonNull(getCommand("iplog")).setExecutor(new IPLogCommand(this));
         getLogger().info("IPLog插件已启用！存储类型: " + config.getString("storage.type", "yaml"));
@@ -46,27 +112,49 @@ public class IPLog extends JavaPlugin implements Listener {
 
     @Override
     public void onDisable() {
+        if (metricsExporter != null) {
+            metricsExporter.shutdown();
+        }
+        // 先写入缓冲中剩余的登录记录，再关闭存储
+        if (writeBehindQueue != null) {
+            writeBehindQueue.shutdown();
+        }
+        if (loginPrefetcher != null) {
+            loginPrefetcher.shutdown();
+        }
+        awaitPendingEnrichments();
+        if (geoLookup != null) {
+            geoLookup.shutdown();
+        }
+        // 等待排队中的查询和玩家数据写入完成
+        if (executors != null) {
+            executors.shutdown();
+        }
+        if (geoCache != null) {
+            geoCache.save();
+        }
         if (storageHandler != null) {
             storageHandler.shutdown();
         }
+        TimeService.get().shutdown();
         getLogger().info("IPLog插件已禁用！");
     }
 
     private boolean initializeStorage() {
-        String storageType = config.getString("storage.type", "yaml").toLowerCase();
-
         try {
-            switch (storageType) {
-                case "mysql":
-                    storageHandler = new MySQLStorageHandler(this);
-                    break;
-                case "yaml":
-                default:
-                    storageHandler = new YamlStorageHandler(this);
-                    break;
+            storageHandler = createStorageHandler(getStorageType());
+            storageHandler.initialize();
+
+            // 统计到达具体存储的每次调用
+            if (Metrics.isEnabled()) {
+                storageHandler = new InstrumentedStorageHandler(storageHandler);
             }
 
-            storageHandler.initialize();
+            // 活跃玩家缓存包装在具体存储之外
+            if (config.getBoolean("data.player-cache.enabled", true)) {
+                playerCache = new CachingStorageHandler(this, storageHandler);
+                storageHandler = playerCache;
+            }
             return true;
         } catch (Exception e) {
             getLogger().log(Level.SEVERE, "初始化存储系统失败: " + e.getMessage(), e);
@@ -74,66 +162,286 @@ public class IPLog extends JavaPlugin implements Listener {
         }
     }
 
+    /**
+     * 创建指定类型的存储（未初始化）
+     */
+    public StorageHandler createStorageHandler(String type) {
+        switch (type) {
+            case "mysql":
+                return new MySQLStorageHandler(this, executors);
+            case "log":
+                return new LogStorageHandler(this, executors);
+            case "sqlite":
+                return new SQLiteStorageHandler(this, executors);
+            case "yaml":
+            default:
+                return new YamlStorageHandler(this);
+        }
+    }
+
+    /**
+     * 当前使用的存储类型，未知的类型按 yaml 处理
+     */
+    public String getStorageType() {
+        String type = config.getString("storage.type", "yaml").toLowerCase();
+        return StorageMigrator.STORAGE_TYPES.contains(type) ? type : "yaml";
+    }
+
+    /**
+     * 登录前阶段（异步线程）：登录最终被允许时开始预取，被拒绝时丢弃之前的预取
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (loginPrefetcher == null || !config.getBoolean("features.auto-log-on-join", true)) {
+            return;
+        }
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            loginPrefetcher.discard(event.getUniqueId());
+            return;
+        }
+        byte[] address = IPAddresses.toBytes(event.getAddress());
+        if (address != null) {
+            loginPrefetcher.prefetch(event.getUniqueId(), address);
+        }
+    }
+
+    /**
+     * 白名单、服务器已满等在登录前阶段之后才拒绝的登录
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (loginPrefetcher != null && event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            loginPrefetcher.discard(event.getPlayer().getUniqueId());
+        }
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         if (!config.getBoolean("features.auto-log-on-join", true)) {
             return;
         }
 
-        Player player = event.getPlayer();
-        String ip = Objects.requireNonNull(player.getAddress()).getAddress().getHostAddress();
-        UUID uuid = player.getUniqueId();
-        String playerName = player.getName();
+        long start = JOIN_EVENT.start();
+        try {
+            Player player = event.getPlayer();
+            if (playerCache != null) {
+                playerCache.onJoin(player.getUniqueId());
+            }
+            byte[] address = IPAddresses.toBytes(Objects.requireNonNull(player.getAddress()).getAddress());
+            UUID uuid = player.getUniqueId();
+            String playerName = player.getName();
+
+            JoinWriteBehindQueue.JoinObservation observation =
+                    new JoinWriteBehindQueue.JoinObservation(uuid, playerName, address, getCurrentTimestamp());
+
+            // 优先放入写入缓冲，缓冲已满时退回为单独的异步写入
+            if (writeBehindEnabled && writeBehindQueue.offer(observation)) {
+                return;
+            }
 
-        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            submitJoinsFromMainThread(uuid, Collections.singletonList(observation));
+        } finally {
+            JOIN_EVENT.stop(start);
+        }
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        if (playerCache != null) {
+            playerCache.onQuit(event.getPlayer().getUniqueId());
+        }
+    }
+
+    /**
+     * 提交一组登录观测，同一玩家的更新按提交顺序依次执行，避免并发的 加载-修改-保存 互相覆盖
+     */
+    CompletableFuture<Void> submitJoins(UUID uuid, List<JoinWriteBehindQueue.JoinObservation> observations) {
+        return playerUpdates.submit(uuid, () -> {
             try {
-                logPlayerIP(uuid, playerName, ip);
+                recordJoins(uuid, observations);
             } catch (Exception e) {
-                getLogger().warning("记录玩家IP时出错: " + e.getMessage());
+                getLogger().log(Level.WARNING, "记录玩家 " + uuid + " 的IP时出错: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 在主线程上提交登录观测：storage 线程池已满时主线程上的提交会被拒绝，
+     * 此时放回写入缓冲由写线程重新提交，写线程上线程池满时由写线程自己执行，登录记录不会丢失
+     */
+    private void submitJoinsFromMainThread(UUID uuid, List<JoinWriteBehindQueue.JoinObservation> observations) {
+        submitJoins(uuid, observations).whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof RejectedExecutionException)) {
+                return;
+            }
+            REQUEUED_JOINS.increment();
+            DebugLogger.log(() -> "存储线程池已满，玩家 " + uuid + " 的登录记录放回写入缓冲");
+            try {
+                writeBehindQueue.requeue(uuid, observations);
+            } catch (RejectedExecutionException e) {
+                getLogger().severe("插件正在关闭，玩家 " + uuid + " 的登录记录未能保存");
             }
         });
     }
 
-    private void logPlayerIP(UUID uuid, String playerName, String ip) {
+    /**
+     * 将同一玩家的一组登录观测按顺序应用到玩家数据，只加载和保存一次
+     */
+    void recordJoins(UUID uuid, List<JoinWriteBehindQueue.JoinObservation> observations) {
+        long recordStart = RECORD_JOINS.start();
+        // 预取在同一玩家的更新队列中先于本任务执行，取到的数据就是当前最新的
+        LoginPrefetcher.Prefetch prefetch = loginPrefetcher != null ? loginPrefetcher.take(uuid) : null;
+        PlayerData playerData = prefetch != null
+                ? prefetch.getPlayerData()
+                : storageHandler.loadPlayerData(uuid, config.getInt("data.max-history-size", 100));
+        List<byte[]> pendingLookups = new ArrayList<>(1);
+        for (JoinWriteBehindQueue.JoinObservation observation : observations) {
+            long start = LOG_IP.start();
+            playerData = logPlayerIP(playerData, uuid, observation.getName(), observation.getAddress(),
+                    observation.getTimestamp(), prefetch, pendingLookups);
+            LOG_IP.stop(start);
+        }
+
+        // 保存玩家数据
+        storageHandler.savePlayerData(playerData);
+        RECORD_JOINS.stop(recordStart);
+        String savedName = playerData.getName();
+        DebugLogger.log(() -> "玩家 " + savedName + " 的IP记录已保存");
+
+        // 先落库，再异步查询地理信息并写回，登录记录不等待API
+        for (byte[] address : pendingLookups) {
+            enrichAsync(uuid, address, 0);
+        }
+    }
+
+    /**
+     * 异步查询IP地理信息，查询完成后按玩家串行写回对应的记录
+     * 查询失败（包括被限流或熔断）时放入重试队列，attempts 为此前已失败的次数
+     */
+    void enrichAsync(UUID uuid, byte[] address, int attempts) {
+        String ip = IPAddresses.format(address);
+        CompletableFuture<Void> future = geoLookup.lookup(ip).thenCompose(ipInfo -> {
+            if (ipInfo == null) {
+                // 只有API可能在稍后查到，本地数据库查不到的地址不再重试
+                if (geoRetryQueue != null && geoLookup.getHttpResolver() != null) {
+                    geoRetryQueue.offer(uuid, address, attempts + 1);
+                } else {
+                    getLogger().warning("查询IP信息失败: " + ip);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+            return playerUpdates.submit(uuid, () -> {
+                try {
+                    applyGeoInfo(uuid, address, ipInfo);
+                } catch (Exception e) {
+                    getLogger().log(Level.WARNING, "写回玩家 " + uuid + " 的IP信息时出错: " + e.getMessage(), e);
+                }
+            });
+        });
+        pendingEnrichments.add(future);
+        future.whenComplete((result, error) -> pendingEnrichments.remove(future));
+    }
+
+    private void applyGeoInfo(UUID uuid, byte[] address, Map<String, String> ipInfo) {
         PlayerData playerData = storageHandler.loadPlayerData(uuid);
+        if (playerData == null) {
+            return;
+        }
+        IPRecord record = playerData.findExistingRecord(address);
+        if (record == null) {
+            return;
+        }
+
+        record.setLocation(ipInfo.get("location"));
+        record.setIsp(ipInfo.get("isp"));
+        if (Arrays.equals(address, playerData.getCurrentAddress())) {
+            playerData.setCurrentLocation(ipInfo.get("location"));
+            playerData.setCurrentISP(ipInfo.get("isp"));
+        }
+        storageHandler.savePlayerData(playerData);
+        // 之前预取的数据已过时
+        if (loginPrefetcher != null) {
+            loginPrefetcher.discard(uuid);
+        }
+        DebugLogger.log(() -> "成功查询IP信息: " + IPAddresses.format(address) + " -> " + ipInfo.get("location"));
+    }
+
+    private void awaitPendingEnrichments() {
+        if (pendingEnrichments.isEmpty()) {
+            return;
+        }
+        long timeoutMillis = Math.max(1000, config.getLong("api.timeout", 5000) * 2);
+        try {
+            CompletableFuture.allOf(pendingEnrichments.toArray(new CompletableFuture[0]))
+                    .get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            getLogger().warning("等待IP信息查询完成超时，剩余 " + pendingEnrichments.size() + " 条未写回");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 单个任务的失败已在各自的回调中记录
+        }
+    }
+
+    private PlayerData logPlayerIP(PlayerData playerData, UUID uuid, String playerName, byte[] address, long timestamp,
+                                   LoginPrefetcher.Prefetch prefetch, List<byte[]> pendingLookups) {
+        String ip = IPAddresses.format(address);
         if (playerData == null) {
             playerData = new PlayerData(uuid.toString(), playerName);
         } else {
             playerData.setName(playerName); // 更新名字
         }
 
-        playerData.setCurrentIP(ip);
-        playerData.setLastSeen(getCurrentTimestamp());
+        playerData.setCurrentAddress(address);
+        playerData.setLastSeen(timestamp);
 
         // 检查是否已有此IP记录
         boolean ipAlreadyRecorded = false;
         if (config.getBoolean("features.check-duplicate-ip", true)) {
-            IPRecord existingRecord = playerData.findExistingRecord(ip);
+            IPRecord existingRecord = playerData.findExistingRecord(address);
             if (existingRecord != null) {
                 // 更新现有记录
-                existingRecord.setLastSeen(getCurrentTimestamp());
+                existingRecord.setLastSeen(timestamp);
                 ipAlreadyRecorded = true;
-                getLogger().info("[DEBUG] IP " + ip + " 已存在记录中，跳过API查询");
+                // 之前查询失败、仍缺少位置或ISP的记录重新补全
+                if (config.getBoolean("features.query-ip-location", true)
+                        && (existingRecord.getLocation() == null || existingRecord.getIsp() == null)) {
+                    Map<String, String> ipInfo = prefetch != null ? prefetch.getGeoInfo(address) : null;
+                    if (ipInfo != null) {
+                        existingRecord.setLocation(ipInfo.get("location"));
+                        existingRecord.setIsp(ipInfo.get("isp"));
+                        playerData.setCurrentLocation(ipInfo.get("location"));
+                        playerData.setCurrentISP(ipInfo.get("isp"));
+                    } else {
+                        pendingLookups.add(address);
+                    }
+                } else {
+                    DebugLogger.log(() -> "IP " + ip + " 已存在记录中，跳过API查询");
+                }
             }
         }
 
         // 如果没有记录过此IP，或者需要强制查询，则查询IP信息
         if (!ipAlreadyRecorded) {
             // 创建新记录
-            IPRecord newRecord = new IPRecord(ip, getCurrentTimestamp(), getCurrentTimestamp());
+            IPRecord newRecord = new IPRecord(address, timestamp, timestamp);
 
-            // 查询IP信息
+            // 查询IP信息：预取已完成或缓存命中时直接填入，否则保存后再异步查询
             if (config.getBoolean("features.query-ip-location", true)) {
-                Map<String, String> ipInfo = queryIPInfo(ip);
+                Map<String, String> ipInfo = prefetch != null ? prefetch.getGeoInfo(address) : null;
+                if (ipInfo == null) {
+                    ipInfo = geoLookup.getCached(ip);
+                }
                 if (ipInfo != null) {
                     newRecord.setLocation(ipInfo.get("location"));
                     newRecord.setIsp(ipInfo.get("isp"));
                     playerData.setCurrentLocation(ipInfo.get("location"));
                     playerData.setCurrentISP(ipInfo.get("isp"));
 
-                    getLogger().info("[DEBUG] 成功查询IP信息: " + ip + " -> " + ipInfo.get("location"));
+                    DebugLogger.log(() -> "IP " + ip + " 命中缓存，跳过API查询");
                 } else {
-                    getLogger().warning("查询IP信息失败: " + ip);
+                    pendingLookups.add(address);
                 }
             }
 
@@ -147,9 +455,7 @@ public class IPLog extends JavaPlugin implements Listener {
             }
         }
 
-        // 保存玩家数据
-        storageHandler.savePlayerData(playerData);
-        getLogger().info("[DEBUG] 玩家 " + playerName + " 的IP记录已保存");
+        return playerData;
     }
 
     public PlayerData getPlayerData(UUID uuid) {
@@ -160,213 +466,64 @@ public class IPLog extends JavaPlugin implements Listener {
         return storageHandler.findPlayerDataByName(playerName);
     }
 
-    private Map<String, String> queryIPInfo(String ip) {
-        String apiKey = config.getString("api.key");
-        String apiUrl = config.getString("api.url", API_URL);
-
-        // 调试信息：显示API配置
-        getLogger().info("[DEBUG] 开始查询IP信息: " + ip);
-        getLogger().info("[DEBUG] API URL: " + apiUrl);
-        getLogger().info("[DEBUG] API Key: " + (apiKey != null ?
-                apiKey.substring(0, Math.min(5, apiKey.length())) + "..." : "null"));
-
-        try {
-            // 构建完整的请求URL
-            String fullUrl = apiUrl + "?key=" + apiKey + "&ip=" + ip + "&coordsys=WGS84&area=multi";
-            getLogger().info("[DEBUG] 完整请求URL: " + fullUrl.replace(apiKey, "***")); // 隐藏完整API密钥
-
-            URL url = new URL(fullUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(config.getInt("api.timeout", 5000));
-            connection.setReadTimeout(config.getInt("api.timeout", 5000));
-
-            // 添加请求头信息
-            connection.setRequestProperty("User-Agent", "Minecraft-IPLog-Plugin/1.0");
-            connection.setRequestProperty("Accept", "application/json");
-
-            getLogger().info("[DEBUG] 发送HTTP请求...");
-
-            int responseCode = connection.getResponseCode();
-            String responseMessage = connection.getResponseMessage();
-
-            getLogger().info("[DEBUG] HTTP响应码: " + responseCode);
-            getLogger().info("[DEBUG] HTTP响应消息: " + responseMessage);
-
-            if (responseCode == 200) {
-                // 成功响应
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream(), "UTF-8"));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                String responseBody = response.toString();
-                getLogger().info("[DEBUG] API响应体: " + responseBody);
-
-                return parseAPIResponse(responseBody);
-            } else {
-                // 错误响应 - 读取错误流
-                getLogger().warning("[ERROR] API返回错误代码: " + responseCode);
-
-                try {
-                    InputStream errorStream = connection.getErrorStream();
-                    if (errorStream != null) {
-                        BufferedReader errorReader = new BufferedReader(
-                                new InputStreamReader(errorStream, "UTF-8"));
-                        StringBuilder errorResponse = new StringBuilder();
-                        String errorLine;
-                        while ((errorLine = errorReader.readLine()) != null) {
-                            errorResponse.append(errorLine);
-                        }
-                        errorReader.close();
-
-                        String errorBody = errorResponse.toString();
-                        getLogger().warning("[ERROR] API错误响应体: " + errorBody);
-                    } else {
-                        getLogger().warning("[ERROR] 无错误响应体");
-                    }
-                } catch (Exception e) {
-                    getLogger().warning("[ERROR] 读取错误流时出错: " + e.getMessage());
-                }
-
-                // 根据不同的HTTP状态码提供具体的错误信息
-                switch (responseCode) {
-                    case 400:
-                        getLogger().warning("[ERROR] 400 Bad Request - 请求参数错误");
-                        break;
-                    case 401:
-                        getLogger().warning("[ERROR] 401 Unauthorized - 认证失败");
-                        break;
-                    case 403:
-                        getLogger().warning("[ERROR] 403 Forbidden - 访问被拒绝，可能的原因:");
-                        getLogger().warning("[ERROR]   - API密钥无效或已过期");
-                        getLogger().warning("[ERROR]   - 账户余额不足");
-                        getLogger().warning("[ERROR]   - IP地址不在白名单中");
-                        getLogger().warning("[ERROR]   - 请求频率超限");
-                        break;
-                    case 404:
-                        getLogger().warning("[ERROR] 404 Not Found - API端点不存在");
-                        break;
-                    case 429:
-                        getLogger().warning("[ERROR] 429 Too Many Requests - 请求频率超限");
-                        break;
-                    case 500:
-                        getLogger().warning("[ERROR] 500 Internal Server Error - 服务器内部错误");
-                        break;
-                    case 503:
-                        getLogger().warning("[ERROR] 503 Service Unavailable - 服务不可用");
-                        break;
-                    default:
-                        getLogger().warning("[ERROR] 未知HTTP错误: " + responseCode);
-                        break;
-                }
-            }
-        } catch (java.net.SocketTimeoutException e) {
-            getLogger().warning("[ERROR] 连接API超时: " + e.getMessage());
-        } catch (java.net.UnknownHostException e) {
-            getLogger().warning("[ERROR] 无法解析API主机名: " + e.getMessage());
-        } catch (IOException e) {
-            getLogger().warning("[ERROR] 网络IO错误: " + e.getMessage());
-        } catch (Exception e) {
-            getLogger().warning("[ERROR] 查询IP信息时发生未知错误: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        return null;
+    /**
+     * 按玩家名查找，只加载最新的 historyLimit 条IP记录
+     */
+    public PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        return storageHandler.findPlayerDataByName(playerName, historyLimit);
     }
 
-    private Map<String, String> parseAPIResponse(String response) {
-        Map<String, String> ipInfo = new HashMap<>();
-        try {
-            getLogger().info("[DEBUG] 开始解析API响应");
-
-            // 检查响应是否包含错误信息
-            if (response.contains("\"code\"") && !response.contains("\"code\":\"Success\"")) {
-                // 提取错误代码和消息
-                int codeStart = response.indexOf("\"code\":\"") + 8;
-                int codeEnd = response.indexOf("\"", codeStart);
-                if (codeStart > 7 && codeEnd > codeStart) {
-                    String errorCode = response.substring(codeStart, codeEnd);
-                    getLogger().warning("[ERROR] API业务错误代码: " + errorCode);
-                }
-
-                int msgStart = response.indexOf("\"msg\":\"") + 7;
-                int msgEnd = response.indexOf("\"", msgStart);
-                if (msgStart > 6 && msgEnd > msgStart) {
-                    String errorMsg = response.substring(msgStart, msgEnd);
-                    getLogger().warning("[ERROR] API业务错误消息: " + errorMsg);
-                }
+    private long getCurrentTimestamp() {
+        return TimeService.currentTimeMillis();
+    }
 
-                return null;
-            }
+    public FileConfiguration getPluginConfig() {
+        return config;
+    }
 
-            // 解析成功响应
-            if (response.contains("\"country\"")) {
-                int countryStart = response.indexOf("\"country\":\"") + 11;
-                int countryEnd = response.indexOf("\"", countryStart);
-                if (countryStart > 10 && countryEnd > countryStart) {
-                    String country = response.substring(countryStart, countryEnd);
-                    ipInfo.put("location", country);
-                    getLogger().info("[DEBUG] 解析到国家: " + country);
-                }
-            }
+    public StorageHandler getStorageHandler() {
+        return storageHandler;
+    }
 
-            if (response.contains("\"prov\"")) {
-                int provStart = response.indexOf("\"prov\":\"") + 8;
-                int provEnd = response.indexOf("\"", provStart);
-                if (provStart > 7 && provEnd > provStart) {
-                    String province = response.substring(provStart, provEnd);
-                    String currentLocation = ipInfo.getOrDefault("location", "");
-                    ipInfo.put("location", currentLocation + " " + province);
-                    getLogger().info("[DEBUG] 解析到省份: " + province);
-                }
-            }
+    /**
+     * 具体的存储实现（不含缓存层）
+     */
+    public StorageHandler getBackendStorage() {
+        StorageHandler backend = playerCache != null ? playerCache.getDelegate() : storageHandler;
+        return backend instanceof InstrumentedStorageHandler ? ((InstrumentedStorageHandler) backend).getDelegate() : backend;
+    }
 
-            if (response.contains("\"city\"")) {
-                int cityStart = response.indexOf("\"city\":\"") + 8;
-                int cityEnd = response.indexOf("\"", cityStart);
-                if (cityStart > 7 && cityEnd > cityStart) {
-                    String city = response.substring(cityStart, cityEnd);
-                    String currentLocation = ipInfo.getOrDefault("location", "");
-                    ipInfo.put("location", currentLocation + " " + city);
-                    getLogger().info("[DEBUG] 解析到城市: " + city);
-                }
-            }
+    public StorageMigrator getStorageMigrator() {
+        return storageMigrator;
+    }
 
-            if (response.contains("\"isp\"")) {
-                int ispStart = response.indexOf("\"isp\":\"") + 7;
-                int ispEnd = response.indexOf("\"", ispStart);
-                if (ispStart > 6 && ispEnd > ispStart) {
-                    String isp = response.substring(ispStart, ispEnd);
-                    ipInfo.put("isp", isp);
-                    getLogger().info("[DEBUG] 解析到ISP: " + isp);
-                }
-            }
+    /**
+     * 插件自己的线程池和定时任务调度
+     */
+    public IPLogExecutors getExecutors() {
+        return executors;
+    }
 
-            getLogger().info("[DEBUG] API响应解析完成，获取到 " + ipInfo.size() + " 个字段");
+    public LoginPrefetcher getLoginPrefetcher() {
+        return loginPrefetcher;
+    }
 
-        } catch (Exception e) {
-            getLogger().warning("[ERROR] 解析API响应时出错: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return ipInfo;
+    /**
+     * 活跃玩家缓存，未启用时为null
+     */
+    public CachingStorageHandler getPlayerCache() {
+        return playerCache;
     }
 
-    private String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        sdf.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
-        return sdf.format(new Date());
+    public GeoCache getGeoCache() {
+        return geoCache;
     }
 
-    public FileConfiguration getPluginConfig() {
-        return config;
+    public GeoLookupService getGeoLookup() {
+        return geoLookup;
     }
 
-    public StorageHandler getStorageHandler() {
-        return storageHandler;
+    public GeoRetryQueue getGeoRetryQueue() {
+        return geoRetryQueue;
     }
 }
\ No newline at end of file
@@ -7,28 +7,100 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 public class IPLogCommand implements CommandExecutor {
 
+    // 每页显示的IP记录条数
+    private static final int HISTORY_DISPLAY_LIMIT = 10;
+    private static final int MAX_CURSOR_SENDERS = 64;
+
     private final IPLog plugin;
 
+    // 每个命令发送者最近浏览的玩家及各页末尾的游标，翻页时从最近的已知页继续
+    private final Map<String, PageCursors> pageCursors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PageCursors> eldest) {
+            return size() > MAX_CURSOR_SENDERS;
+        }
+    };
+
     public IPLogCommand(IPLog plugin) {
         this.plugin = plugin;
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (args.length != 1) {
-            sender.sendMessage(ChatColor.RED + "用法: /iplog <玩家名>");
+        if (args.length == 2 && args[0].equalsIgnoreCase("ip")) {
+            lookupAccounts(sender, args[1]);
+            return true;
+        }
+
+        if (args.length >= 3 && args[0].equalsIgnoreCase("migrate")) {
+            startMigration(sender, args);
+            return true;
+        }
+
+        int page = 1;
+        if (args.length == 2) {
+            try {
+                page = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                sender.sendMessage(ChatColor.RED + "无效的页码: " + args[1]);
+                return true;
+            }
+        } else if (args.length != 1) {
+            sender.sendMessage(ChatColor.RED + "用法: /iplog <玩家名> [页码] 或 /iplog ip <IP地址|网段>");
             return false;
         }
 
+        if (args[0].equalsIgnoreCase("cache")) {
+            displayCacheStats(sender);
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("stats")) {
+            displayMetrics(sender);
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("api")) {
+            displayApiStatus(sender);
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("pool")) {
+            if (plugin.getBackendStorage() instanceof MySQLStorageHandler) {
+                MySQLStorageHandler mysql = (MySQLStorageHandler) plugin.getBackendStorage();
+                sender.sendMessage(ChatColor.YELLOW + mysql.getPoolStatus());
+                RetentionEngine retention = mysql.getRetentionEngine();
+                if (retention != null) {
+                    sender.sendMessage(ChatColor.YELLOW + "保留策略: " +
+                            (retention.getMaxAgeDays() > 0 ? "保留 " + retention.getMaxAgeDays() + " 天" : "不按时间清理") +
+                            "，累计删除 " + retention.getDeletedRecords() + " 条IP记录、" + retention.getDeletedPlayers() + " 名玩家");
+                }
+            } else {
+                sender.sendMessage(ChatColor.RED + "当前存储类型不使用连接池");
+            }
+            return true;
+        }
+
         String targetName = args[0];
+        int requestedPage = page;
 
-        // 异步查找玩家数据
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            PlayerData playerData = plugin.findPlayerDataByName(targetName);
+        // 异步查找玩家数据，只读取第一页和所请求的那一页
+        runQuery(sender, () -> {
+            PlayerData playerData = plugin.findPlayerDataByName(targetName, HISTORY_DISPLAY_LIMIT);
 
             if (playerData == null) {
                 Bukkit.getScheduler().runTask(plugin, () ->
@@ -37,41 +109,337 @@ public class IPLogCommand implements CommandExecutor {
                 return;
             }
 
+            int totalPages = Math.max(1, (playerData.getHistoryTotal() + HISTORY_DISPLAY_LIMIT - 1) / HISTORY_DISPLAY_LIMIT);
+            if (requestedPage > totalPages) {
+                Bukkit.getScheduler().runTask(plugin, () ->
+                        sender.sendMessage(ChatColor.RED + "页码超出范围，共 " + totalPages + " 页")
+                );
+                return;
+            }
+
+            List<IPRecord> records = loadHistoryPage(sender.getName(), playerData, requestedPage);
+
             // 同步回主线程发送结果
             Bukkit.getScheduler().runTask(plugin, () -> {
-                displayPlayerInfo(sender, playerData);
+                displayPlayerInfo(sender, playerData, records, requestedPage, totalPages);
             });
         });
 
         return true;
     }
 
-    private void displayPlayerInfo(CommandSender sender, PlayerData playerData) {
+    /**
+     * /iplog migrate <来源> <目标> [restart]
+     */
+    private void startMigration(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("iplog.admin")) {
+            sender.sendMessage(ChatColor.RED + "你没有权限迁移存储数据");
+            return;
+        }
+        String from = args[1].toLowerCase();
+        String to = args[2].toLowerCase();
+        boolean restart = args.length == 4 && args[3].equalsIgnoreCase("restart");
+        if (args.length > 4 || (args.length == 4 && !restart)) {
+            sender.sendMessage(ChatColor.RED + "用法: /iplog migrate <来源> <目标> [restart]");
+            return;
+        }
+        if (!StorageMigrator.STORAGE_TYPES.contains(from) || !StorageMigrator.STORAGE_TYPES.contains(to)) {
+            sender.sendMessage(ChatColor.RED + "存储类型只能是 " + String.join("、", StorageMigrator.STORAGE_TYPES));
+            return;
+        }
+        if (from.equals(to)) {
+            sender.sendMessage(ChatColor.RED + "来源和目标不能是同一种存储");
+            return;
+        }
+        if (to.equals(plugin.getStorageType()) && !StorageMigrator.MERGING_TYPES.contains(to)
+                && !Bukkit.getOnlinePlayers().isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "目标 " + to + " 是正在使用的存储，迁移会覆盖在线玩家的新数据，请在没有玩家在线时执行");
+            return;
+        }
+        if (!plugin.getStorageMigrator().start(sender, from, to, restart)) {
+            sender.sendMessage(ChatColor.RED + "已有迁移正在进行中");
+        }
+    }
+
+    /**
+     * 在插件的查询线程池中执行，排队的查询已满时提示发送者稍后再试
+     */
+    private void runQuery(CommandSender sender, Runnable query) {
+        try {
+            plugin.getExecutors().query().execute(query);
+        } catch (RejectedExecutionException e) {
+            sender.sendMessage(ChatColor.RED + "服务器繁忙，请稍后再试");
+        }
+    }
+
+    /**
+     * 读取指定页的IP记录：第一页直接使用随玩家一起加载的记录，
+     * 其他页从前一页末尾的游标读取一页；该发送者没有浏览过前一页时，先用一次查询找到前一页的最后一条记录，
+     * 只读取和反序列化请求的这一页
+     * 记录总数或第一页与上次不同时说明历史已变化，之前记住的游标全部作废
+     */
+    private List<IPRecord> loadHistoryPage(String senderName, PlayerData playerData, int page) {
+        UUID uuid = UUID.fromString(playerData.getUuid());
+        // 统一按分页顺序排列（完整加载的历史记录按添加顺序保存）
+        List<IPRecord> firstPage = HistoryPages.page(playerData.getIpHistory(), null, HISTORY_DISPLAY_LIMIT);
+        int historyTotal = playerData.getHistoryTotal();
+
+        PageCursors cursors;
+        synchronized (pageCursors) {
+            cursors = pageCursors.get(senderName);
+            if (cursors == null || !cursors.uuid.equals(uuid)
+                    || cursors.historyTotal != historyTotal || !cursors.isFirstPage(firstPage)) {
+                cursors = new PageCursors(uuid, historyTotal, firstPage);
+                pageCursors.put(senderName, cursors);
+            }
+        }
+
+        synchronized (cursors) {
+            if (page == 1) {
+                return firstPage;
+            }
+            if (firstPage.isEmpty()) {
+                return new ArrayList<>();
+            }
+            // 第一页的游标总是由刚加载的第一页得出
+            cursors.ends.put(1, HistoryCursor.after(firstPage.get(firstPage.size() - 1)));
+
+            HistoryCursor previousEnd = cursors.ends.get(page - 1);
+            if (previousEnd == null) {
+                previousEnd = plugin.getStorageHandler().findHistoryCursor(uuid, (page - 1) * HISTORY_DISPLAY_LIMIT);
+                if (previousEnd == null) {
+                    return new ArrayList<>();
+                }
+                cursors.ends.put(page - 1, previousEnd);
+            }
+
+            List<IPRecord> records = plugin.getStorageHandler().getIPHistoryPage(uuid, previousEnd, HISTORY_DISPLAY_LIMIT);
+            if (!records.isEmpty()) {
+                cursors.ends.put(page, HistoryCursor.after(records.get(records.size() - 1)));
+            }
+            return records;
+        }
+    }
+
+    /**
+     * 查找使用过某个IP（或 /24、/48 网段）的所有账号
+     */
+    private void lookupAccounts(CommandSender sender, String address) {
+        boolean subnet = address.contains("/");
+        String ip = subnet ? address.substring(0, address.indexOf('/')) : address;
+        String mask = subnet ? address.substring(address.indexOf('/') + 1) : "";
+
+        if (!IPAddresses.isValid(ip)) {
+            sender.sendMessage(ChatColor.RED + "无效的IP地址: " + address);
+            return;
+        }
+        if (subnet && !mask.equals(ip.contains(":") ? "48" : "24")) {
+            sender.sendMessage(ChatColor.RED + "仅支持 IPv4 /24 或 IPv6 /48 网段");
+            return;
+        }
+
+        runQuery(sender, () -> {
+            Map<UUID, String> accounts = plugin.getStorageHandler().findAccountsByIP(ip, subnet);
+            String title = subnet ? IPAddresses.subnetOf(ip) : ip;
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (accounts.isEmpty()) {
+                    sender.sendMessage(ChatColor.RED + "没有玩家使用过 " + title);
+                    return;
+                }
+                sender.sendMessage(ChatColor.GOLD + "=== " + title + " 的关联账号 (" + accounts.size() + ") ===");
+                for (Map.Entry<UUID, String> entry : accounts.entrySet()) {
+                    sender.sendMessage(ChatColor.GRAY + "  " + ChatColor.WHITE +
+                            (entry.getValue() != null ? entry.getValue() : "未知") +
+                            ChatColor.GRAY + " (" + entry.getKey() + ")");
+                }
+            });
+        });
+    }
+
+    private void displayMetrics(CommandSender sender) {
+        sender.sendMessage(ChatColor.GOLD + "=== 线程池 ===");
+        for (IPLogExecutors.Pool pool : plugin.getExecutors().getPools()) {
+            sender.sendMessage(ChatColor.YELLOW + pool.getName() + ": " + ChatColor.WHITE +
+                    "执行中 " + pool.getActiveCount() + "/" + pool.getMaximumPoolSize() +
+                    ", 排队 " + pool.getQueue().size() + "/" + pool.getCapacity() +
+                    ", 已完成 " + pool.getCompletedTaskCount());
+        }
+
+        if (!Metrics.isEnabled()) {
+            sender.sendMessage(ChatColor.RED + "性能统计未启用");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== 耗时统计（毫秒） ===");
+        for (LatencyHistogram histogram : Metrics.getHistograms()) {
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            sender.sendMessage(ChatColor.YELLOW + histogram.getName() + ": " + ChatColor.WHITE + histogram.getCount() + " 次" +
+                    ChatColor.YELLOW + "  p50 " + ChatColor.WHITE + millis(histogram.quantileNanos(0.5)) +
+                    ChatColor.YELLOW + "  p99 " + ChatColor.WHITE + millis(histogram.quantileNanos(0.99)) +
+                    ChatColor.YELLOW + "  最大 " + ChatColor.WHITE + millis(histogram.getMaxNanos()));
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== 计数 ===");
+        for (Metrics.Counter counter : Metrics.getCounters()) {
+            String label = counter.getLabel() != null ? " [" + counter.getLabelValue() + "]" : "";
+            sender.sendMessage(ChatColor.YELLOW + counter.getName() + label + ": " + ChatColor.WHITE + counter.get());
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    private void displayCacheStats(CommandSender sender) {
+        CachingStorageHandler playerCache = plugin.getPlayerCache();
+        if (playerCache != null) {
+            long total = playerCache.getHits() + playerCache.getMisses();
+            sender.sendMessage(ChatColor.GOLD + "=== 玩家数据缓存 ===");
+            sender.sendMessage(ChatColor.YELLOW + "缓存玩家: " + ChatColor.WHITE +
+                    playerCache.size() + " / " + playerCache.getMaxSize());
+            sender.sendMessage(ChatColor.YELLOW + "命中: " + ChatColor.WHITE + playerCache.getHits() +
+                    ChatColor.YELLOW + "  未命中: " + ChatColor.WHITE + playerCache.getMisses() +
+                    ChatColor.YELLOW + "  命中率: " + ChatColor.WHITE +
+                    String.format("%.1f%%", total == 0 ? 0.0 : playerCache.getHits() * 100.0 / total));
+            sender.sendMessage(ChatColor.YELLOW + "已淘汰: " + ChatColor.WHITE + playerCache.getEvictions());
+        }
+
+        GeoCache geoCache = plugin.getGeoCache();
+        if (geoCache == null) {
+            sender.sendMessage(ChatColor.RED + "IP缓存未启用");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== IP缓存统计 ===");
+        sender.sendMessage(ChatColor.YELLOW + "缓存条目: " + ChatColor.WHITE +
+                geoCache.size() + " / " + geoCache.getMaxSize());
+        sender.sendMessage(ChatColor.YELLOW + "命中: " + ChatColor.WHITE + geoCache.getHits() +
+                ChatColor.YELLOW + "  未命中: " + ChatColor.WHITE + geoCache.getMisses());
+        sender.sendMessage(ChatColor.YELLOW + "命中率: " + ChatColor.WHITE +
+                String.format("%.1f%%", geoCache.getHitRate() * 100));
+        sender.sendMessage(ChatColor.YELLOW + "已节省API请求: " + ChatColor.WHITE + geoCache.getHits());
+        sender.sendMessage(ChatColor.YELLOW + "已淘汰条目: " + ChatColor.WHITE + geoCache.getEvictions());
+    }
+
+    private void displayApiStatus(CommandSender sender) {
+        GeoLookupService geoLookup = plugin.getGeoLookup();
+        sender.sendMessage(ChatColor.GOLD + "=== IP查询API状态 ===");
+
+        StringBuilder chain = new StringBuilder();
+        for (GeoResolver resolver : geoLookup.getResolvers()) {
+            if (chain.length() > 0) {
+                chain.append(" -> ");
+            }
+            chain.append(resolver.getName());
+        }
+        sender.sendMessage(ChatColor.YELLOW + "查询顺序: " + ChatColor.WHITE + (chain.length() > 0 ? chain : "无"));
+
+        LocalGeoResolver localResolver = geoLookup.getLocalResolver();
+        if (localResolver != null) {
+            sender.sendMessage(ChatColor.YELLOW + "本地数据库: " + ChatColor.WHITE + localResolver.size() + " 个IP段" +
+                    ChatColor.YELLOW + "  命中: " + ChatColor.WHITE + localResolver.getHits() +
+                    ChatColor.YELLOW + "  未命中: " + ChatColor.WHITE + localResolver.getMisses());
+        }
+
+        HttpGeoResolver httpResolver = geoLookup.getHttpResolver();
+        if (httpResolver == null) {
+            sender.sendMessage(ChatColor.YELLOW + "API: " + ChatColor.WHITE + "未启用");
+            return;
+        }
+
+        CircuitBreaker breaker = httpResolver.getCircuitBreaker();
+        if (breaker != null) {
+            CircuitBreaker.State state = breaker.getState();
+            String stateText = state == CircuitBreaker.State.CLOSED ? ChatColor.GREEN + "正常"
+                    : state == CircuitBreaker.State.OPEN ? ChatColor.RED + "熔断中 (剩余 " + (breaker.getRemainingOpenMillis() / 1000) + " 秒)"
+                    : ChatColor.YELLOW + "半开 (等待探测请求)";
+            sender.sendMessage(ChatColor.YELLOW + "熔断器: " + stateText);
+            sender.sendMessage(ChatColor.YELLOW + "连续失败: " + ChatColor.WHITE + breaker.getConsecutiveFailures() +
+                    ChatColor.YELLOW + "  熔断次数: " + ChatColor.WHITE + breaker.getOpenCount());
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + "熔断器: " + ChatColor.WHITE + "未启用");
+        }
+
+        TokenBucket rateLimiter = httpResolver.getRateLimiter();
+        sender.sendMessage(ChatColor.YELLOW + "限流令牌: " + ChatColor.WHITE + (rateLimiter != null ?
+                String.format("%.1f / %.0f", rateLimiter.getAvailableTokens(), rateLimiter.getCapacity()) : "未启用"));
+
+        sender.sendMessage(ChatColor.YELLOW + "请求: " + ChatColor.WHITE + httpResolver.getRequests() +
+                ChatColor.YELLOW + "  成功: " + ChatColor.WHITE + httpResolver.getSuccesses() +
+                ChatColor.YELLOW + "  失败: " + ChatColor.WHITE + httpResolver.getFailures() +
+                ChatColor.YELLOW + "  429: " + ChatColor.WHITE + httpResolver.getTooManyRequests());
+        sender.sendMessage(ChatColor.YELLOW + "被限流: " + ChatColor.WHITE + httpResolver.getThrottled() +
+                ChatColor.YELLOW + "  被熔断: " + ChatColor.WHITE + httpResolver.getShortCircuited() +
+                ChatColor.YELLOW + "  进行中: " + ChatColor.WHITE + geoLookup.getInFlightCount());
+
+        GeoRetryQueue retryQueue = plugin.getGeoRetryQueue();
+        if (retryQueue != null) {
+            sender.sendMessage(ChatColor.YELLOW + "待重试: " + ChatColor.WHITE + retryQueue.size() +
+                    ChatColor.YELLOW + "  已重试: " + ChatColor.WHITE + retryQueue.getRetried() +
+                    ChatColor.YELLOW + "  已放弃: " + ChatColor.WHITE + retryQueue.getDropped());
+        }
+    }
+
+    private void displayPlayerInfo(CommandSender sender, PlayerData playerData, List<IPRecord> records, int page, int totalPages) {
         sender.sendMessage(ChatColor.GOLD + "=== " + playerData.getName() + " 的IP信息 ===");
         sender.sendMessage(ChatColor.YELLOW + "当前IP: " + ChatColor.WHITE + playerData.getCurrentIP());
         sender.sendMessage(ChatColor.YELLOW + "位置: " + ChatColor.WHITE +
                 (playerData.getCurrentLocation() != null ? playerData.getCurrentLocation() : "未知"));
         sender.sendMessage(ChatColor.YELLOW + "ISP: " + ChatColor.WHITE +
                 (playerData.getCurrentISP() != null ? playerData.getCurrentISP() : "未知"));
-        sender.sendMessage(ChatColor.YELLOW + "最后上线: " + ChatColor.WHITE + playerData.getLastSeen());
+        sender.sendMessage(ChatColor.YELLOW + "最后上线: " + ChatColor.WHITE + TimeService.format(playerData.getLastSeen()));
 
-        List<IPRecord> ipHistory = playerData.getIpHistory();
-        if (ipHistory != null && !ipHistory.isEmpty()) {
-            sender.sendMessage(ChatColor.YELLOW + "IP历史记录:");
-            for (int i = 0; i < Math.min(ipHistory.size(), 10); i++) {
-                IPRecord record = ipHistory.get(i);
+        if (!records.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "IP历史记录" +
+                    (totalPages > 1 ? " (第 " + page + "/" + totalPages + " 页，共 " + playerData.getHistoryTotal() + " 条)" : "") + ":");
+            int offset = (page - 1) * HISTORY_DISPLAY_LIMIT;
+            for (int i = 0; i < records.size(); i++) {
+                IPRecord record = records.get(i);
                 String locationInfo = record.getLocation() != null ?
                         " (" + record.getLocation() + ")" : "";
-                sender.sendMessage(ChatColor.GRAY + "  " + (i + 1) + ". " +
+                sender.sendMessage(ChatColor.GRAY + "  " + (offset + i + 1) + ". " +
                         record.getIp() + " - " +
-                        record.getFirstSeen() + locationInfo);
+                        TimeService.format(record.getFirstSeen()) + locationInfo);
             }
-            if (ipHistory.size() > 10) {
-                sender.sendMessage(ChatColor.GRAY + "  ... 还有 " +
-                        (ipHistory.size() - 10) + " 条记录");
+            if (page < totalPages) {
+                sender.sendMessage(ChatColor.GRAY + "  使用 /iplog " + playerData.getName() + " " + (page + 1) + " 查看下一页");
             }
         } else {
             sender.sendMessage(ChatColor.YELLOW + "IP历史记录: " + ChatColor.GRAY + "无");
         }
     }
-}
\ No newline at end of file
+
+    private static final class PageCursors {
+        final UUID uuid;
+        final int historyTotal;
+        // 创建游标时第一页每条记录的位置
+        final List<HistoryCursor> firstPage = new ArrayList<>();
+        // 页码 -> 该页最后一条记录之后的游标，只包含浏览过或跳页时查到的页
+        final Map<Integer, HistoryCursor> ends = new HashMap<>();
+
+        PageCursors(UUID uuid, int historyTotal, List<IPRecord> firstPage) {
+            this.uuid = uuid;
+            this.historyTotal = historyTotal;
+            for (IPRecord record : firstPage) {
+                this.firstPage.add(HistoryCursor.after(record));
+            }
+        }
+
+        boolean isFirstPage(List<IPRecord> records) {
+            if (records.size() != firstPage.size()) {
+                return false;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                HistoryCursor cursor = firstPage.get(i);
+                IPRecord record = records.get(i);
+                if (cursor.getLastSeen() != record.getLastSeen() || !Arrays.equals(cursor.getAddress(), record.getAddress())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ljsure.cn;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * 插件自己的线程池，不再使用与其他插件共享、且没有上限的 Bukkit 异步线程池
+ * storage: 读写玩家数据；geo: IP查询API的HTTP回调；query: 管理员查询和存储迁移
+ * 每个线程池的线程数和队列长度都有上限，队列满时按各自的策略处理：
+ * storage 在非主线程上由提交者自己执行（反压到登录线程和写入缓冲），在主线程上拒绝；
+ * geo 由提交者执行；query 直接拒绝，由命令提示服务器繁忙
+ * 定时任务由单独的调度线程按时交给 storage 或 geo 线程池执行，调度线程本身不做任何耗时工作
+ */
+public class IPLogExecutors {
+    private final JavaPlugin plugin;
+    private final Pool storage;
+    private final Pool geo;
+    private final Pool query;
+    private final ScheduledExecutorService scheduler;
+
+    public IPLogExecutors(JavaPlugin plugin) {
+        this.plugin = plugin;
+        // 兼容旧配置 data.write-threads
+        int storageThreads = plugin.getConfig().getInt("executors.storage.threads",
+                plugin.getConfig().getInt("data.write-threads", 4));
+        this.storage = new Pool("storage", storageThreads,
+                plugin.getConfig().getInt("executors.storage.queue-capacity", 10000), RejectPolicy.CALLER_RUNS_OFF_MAIN);
+        this.geo = new Pool("geo", plugin.getConfig().getInt("executors.geo.threads", 2),
+                plugin.getConfig().getInt("executors.geo.queue-capacity", 1000), RejectPolicy.CALLER_RUNS);
+        this.query = new Pool("query", plugin.getConfig().getInt("executors.query.threads", 2),
+                plugin.getConfig().getInt("executors.query.queue-capacity", 50), RejectPolicy.ABORT);
+
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "IPLog-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler = scheduler;
+    }
+
+    public Pool storage() {
+        return storage;
+    }
+
+    public Pool geo() {
+        return geo;
+    }
+
+    public Pool query() {
+        return query;
+    }
+
+    /**
+     * 定时在指定线程池中执行任务，上一次还没执行完时跳过本次；取消返回的 future 即停止
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Pool pool, String name, Runnable task, long period, TimeUnit unit) {
+        AtomicBoolean running = new AtomicBoolean();
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "执行定时任务 " + name + " 时出错: " + e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        };
+        return scheduler.scheduleAtFixedRate(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                pool.execute(guarded);
+            } catch (RejectedExecutionException e) {
+                // 线程池正在关闭
+                running.set(false);
+            }
+        }, period, period, unit);
+    }
+
+    public List<Pool> getPools() {
+        List<Pool> pools = new ArrayList<>(3);
+        pools.add(storage);
+        pools.add(geo);
+        pools.add(query);
+        return pools;
+    }
+
+    /**
+     * 按依赖顺序关闭：先停止定时任务和管理员查询，再等待剩余的API回调，最后写完排队中的玩家数据
+     */
+    public void shutdown() {
+        // 定时任务在关闭时自动取消，已转交的一次性任务执行完再继续
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        query.shutdown(5);
+        geo.shutdown(5);
+        storage.shutdown(30);
+    }
+
+    private enum RejectPolicy {
+        CALLER_RUNS_OFF_MAIN,
+        CALLER_RUNS,
+        ABORT
+    }
+
+    /**
+     * 有界线程池，记录排队等待时间、拒绝次数和由提交者执行的次数
+     */
+    public final class Pool extends ThreadPoolExecutor {
+        private final String name;
+        private final int capacity;
+        private final LatencyHistogram queueWait;
+
+        private Pool(String name, int threads, int capacity, RejectPolicy policy) {
+            super(Math.max(1, threads), Math.max(1, threads), 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, capacity)));
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            this.queueWait = Metrics.histogram("executor." + name + ".queue_wait", "任务在 " + name + " 线程池中排队等待的时间");
+            Metrics.Counter rejected = Metrics.counter("executor.rejected", "线程池队列已满时被拒绝的任务数", "pool", name);
+            Metrics.Counter callerRuns = Metrics.counter("executor.caller_runs", "线程池队列已满时由提交者执行的任务数", "pool", name);
+            Metrics.gauge("executor.queue_size", "线程池中排队的任务数", "pool", name, () -> getQueue().size());
+            Metrics.gauge("executor.active_threads", "线程池中正在执行任务的线程数", "pool", name, this::getActiveCount);
+
+            AtomicInteger counter = new AtomicInteger();
+            setThreadFactory(r -> {
+                Thread thread = new Thread(r, "IPLog-" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            setRejectedExecutionHandler(rejectionHandler(policy, rejected, callerRuns));
+        }
+
+        private RejectedExecutionHandler rejectionHandler(RejectPolicy policy, Metrics.Counter rejected, Metrics.Counter callerRuns) {
+            return (task, executor) -> {
+                boolean runInCaller = policy == RejectPolicy.CALLER_RUNS
+                        || (policy == RejectPolicy.CALLER_RUNS_OFF_MAIN && !Bukkit.isPrimaryThread());
+                if (runInCaller && !executor.isShutdown()) {
+                    callerRuns.increment();
+                    task.run();
+                    return;
+                }
+                rejected.increment();
+                throw new RejectedExecutionException("IPLog " + name + " 线程池已满或已关闭");
+            };
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long submitted = queueWait.start();
+            super.execute(() -> {
+                queueWait.stop(submitted);
+                command.run();
+            });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        private void shutdown(long timeoutSeconds) {
+            shutdown();
+            try {
+                if (!awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("等待 " + name + " 线程池中的任务完成超时，剩余 " + getQueue().size() + " 个未执行");
+                    shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shutdownNow();
+            }
+        }
+    }
+}
@@ -3,44 +3,69 @@ package ljsure.cn;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.SerializableAs;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 @SerializableAs("IPRecord")
 public class IPRecord implements ConfigurationSerializable {
-    private String ip;
-    private String firstSeen;
-    private String lastSeen;
+    // 16字节地址，IPv4 使用 IPv4-mapped 形式
+    private byte[] address;
+    // 毫秒时间戳
+    private long firstSeen;
+    private long lastSeen;
     private String location;
     private String isp;
 
-    public IPRecord(String ip, String firstSeen, String lastSeen) {
-        this.ip = ip;
+    // 自上次保存后是否被修改（不参与序列化）
+    private transient boolean dirty = true;
+
+    public IPRecord(byte[] address, long firstSeen, long lastSeen) {
+        this.address = address;
         this.firstSeen = firstSeen;
         this.lastSeen = lastSeen;
     }
 
     // Getters and Setters
-    public String getIp() { return ip; }
-    public void setIp(String ip) { this.ip = ip; }
+    public byte[] getAddress() { return address; }
+    public void setAddress(byte[] address) { this.address = address; dirty = true; }
+
+    // 显示用的IP文本
+    public String getIp() { return IPAddresses.format(address); }
+
+    public boolean matches(byte[] other) { return Arrays.equals(address, other); }
 
-    public String getFirstSeen() { return firstSeen; }
-    public void setFirstSeen(String firstSeen) { this.firstSeen = firstSeen; }
+    public long getFirstSeen() { return firstSeen; }
+    public void setFirstSeen(long firstSeen) { this.firstSeen = firstSeen; dirty = true; }
 
-    public String getLastSeen() { return lastSeen; }
-    public void setLastSeen(String lastSeen) { this.lastSeen = lastSeen; }
+    public long getLastSeen() { return lastSeen; }
+    public void setLastSeen(long lastSeen) { this.lastSeen = lastSeen; dirty = true; }
 
     public String getLocation() { return location; }
-    public void setLocation(String location) { this.location = location; }
+    public void setLocation(String location) { this.location = location; dirty = true; }
 
     public String getIsp() { return isp; }
-    public void setIsp(String isp) { this.isp = isp; }
+    public void setIsp(String isp) { this.isp = isp; dirty = true; }
+
+    // 脏标记
+    public boolean isDirty() { return dirty; }
+    public void markClean() { dirty = false; }
+    public void markDirty() { dirty = true; }
+
+    // 拷贝（地址数组不会被修改，直接共享）
+    public IPRecord copy() {
+        IPRecord copy = new IPRecord(address, firstSeen, lastSeen);
+        copy.location = location;
+        copy.isp = isp;
+        copy.dirty = dirty;
+        return copy;
+    }
 
     // ConfigurationSerializable 实现
     @Override
     public Map<String, Object> serialize() {
         Map<String, Object> map = new HashMap<>();
-        map.put("ip", ip);
+        map.put("ip", getIp());
         map.put("firstSeen", firstSeen);
         map.put("lastSeen", lastSeen);
         if (location != null) map.put("location", location);
@@ -48,27 +73,29 @@ public class IPRecord implements ConfigurationSerializable {
         return map;
     }
 
-    // 静态反序列化方法
+    // 静态反序列化方法（兼容旧版本的字符串时间）
     public static IPRecord deserialize(Map<String, Object> map) {
         IPRecord record = new IPRecord(
-                (String) map.get("ip"),
-                (String) map.get("firstSeen"),
-                (String) map.get("lastSeen")
+                IPAddresses.toBytes((String) map.get("ip")),
+                TimeService.toMillis(map.get("firstSeen")),
+                TimeService.toMillis(map.get("lastSeen"))
         );
         record.setLocation((String) map.get("location"));
         record.setIsp((String) map.get("isp"));
+        record.markClean();
         return record;
     }
 
     // 为了向后兼容的fromMap方法
     public static IPRecord fromMap(Map<String, String> map) {
         IPRecord record = new IPRecord(
-                map.get("ip"),
-                map.get("firstSeen"),
-                map.get("lastSeen")
+                IPAddresses.toBytes(map.get("ip")),
+                TimeService.toMillis(map.get("firstSeen")),
+                TimeService.toMillis(map.get("lastSeen"))
         );
         record.setLocation(map.get("location"));
         record.setIsp(map.get("isp"));
+        record.markClean();
         return record;
     }
-}
\ No newline at end of file
+}
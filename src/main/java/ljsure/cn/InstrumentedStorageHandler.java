@@ -0,0 +1,156 @@
+package ljsure.cn;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * 记录每个存储操作耗时的包装，位于玩家缓存和具体存储之间，只统计真正到达存储的调用
+ */
+public class InstrumentedStorageHandler implements StorageHandler {
+    private static final LatencyHistogram SAVE = Metrics.histogram("storage.save", "保存玩家数据的耗时");
+    private static final LatencyHistogram LOAD = Metrics.histogram("storage.load", "按UUID加载玩家数据的耗时");
+    private static final LatencyHistogram FIND_BY_NAME = Metrics.histogram("storage.find_by_name", "按玩家名查找的耗时");
+    private static final LatencyHistogram HISTORY_PAGE = Metrics.histogram("storage.history_page", "分页读取IP记录的耗时");
+    private static final LatencyHistogram HISTORY_CURSOR = Metrics.histogram("storage.history_cursor", "跳页时查找分页游标的耗时");
+    private static final LatencyHistogram LAST_RECORD = Metrics.histogram("storage.last_record", "读取最后一条IP记录的耗时");
+    private static final LatencyHistogram IP_RECORDED = Metrics.histogram("storage.ip_recorded", "检查IP是否已记录的耗时");
+    private static final LatencyHistogram ACCOUNTS_BY_IP = Metrics.histogram("storage.accounts_by_ip", "按IP查找玩家的耗时");
+    private static final LatencyHistogram IMPORT = Metrics.histogram("storage.import", "迁移时批量写入的耗时");
+
+    private final StorageHandler delegate;
+
+    public InstrumentedStorageHandler(StorageHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    public StorageHandler getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        delegate.initialize();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public void savePlayerData(PlayerData playerData) {
+        long start = SAVE.start();
+        try {
+            delegate.savePlayerData(playerData);
+        } finally {
+            SAVE.stop(start);
+        }
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid) {
+        long start = LOAD.start();
+        try {
+            return delegate.loadPlayerData(uuid);
+        } finally {
+            LOAD.stop(start);
+        }
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid, int historyLimit) {
+        long start = LOAD.start();
+        try {
+            return delegate.loadPlayerData(uuid, historyLimit);
+        } finally {
+            LOAD.stop(start);
+        }
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName) {
+        long start = FIND_BY_NAME.start();
+        try {
+            return delegate.findPlayerDataByName(playerName);
+        } finally {
+            FIND_BY_NAME.stop(start);
+        }
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        long start = FIND_BY_NAME.start();
+        try {
+            return delegate.findPlayerDataByName(playerName, historyLimit);
+        } finally {
+            FIND_BY_NAME.stop(start);
+        }
+    }
+
+    @Override
+    public List<IPRecord> getIPHistoryPage(UUID uuid, HistoryCursor after, int limit) {
+        long start = HISTORY_PAGE.start();
+        try {
+            return delegate.getIPHistoryPage(uuid, after, limit);
+        } finally {
+            HISTORY_PAGE.stop(start);
+        }
+    }
+
+    @Override
+    public HistoryCursor findHistoryCursor(UUID uuid, int skip) {
+        long start = HISTORY_CURSOR.start();
+        try {
+            return delegate.findHistoryCursor(uuid, skip);
+        } finally {
+            HISTORY_CURSOR.stop(start);
+        }
+    }
+
+    @Override
+    public IPRecord getLastIPRecord(UUID uuid) {
+        long start = LAST_RECORD.start();
+        try {
+            return delegate.getLastIPRecord(uuid);
+        } finally {
+            LAST_RECORD.stop(start);
+        }
+    }
+
+    @Override
+    public boolean isIPRecorded(UUID uuid, String ip) {
+        long start = IP_RECORDED.start();
+        try {
+            return delegate.isIPRecorded(uuid, ip);
+        } finally {
+            IP_RECORDED.stop(start);
+        }
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        long start = ACCOUNTS_BY_IP.start();
+        try {
+            return delegate.findAccountsByIP(ip, subnet);
+        } finally {
+            ACCOUNTS_BY_IP.stop(start);
+        }
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws Exception {
+        delegate.exportPlayers(afterUuid, consumer);
+    }
+
+    @Override
+    public void importPlayers(List<PlayerData> players) throws Exception {
+        long start = IMPORT.start();
+        try {
+            delegate.importPlayers(players);
+        } finally {
+            IMPORT.stop(start);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ljsure.cn;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * 登录记录写入缓冲
+ * 登录事件只把观测结果放入有界队列，按UUID合并后由单一写线程定时或达到批量阈值时分批提交
+ * 每批按玩家分发到按UUID串行的执行器写入存储
+ */
+public class JoinWriteBehindQueue {
+    private final IPLog plugin;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    // 按UUID合并的待写入观测，保持首次加入的顺序
+    private final LinkedHashMap<UUID, List<JoinObservation>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private boolean flushScheduled;
+
+    private final ScheduledExecutorService writer;
+    private final AtomicLong flushedPlayers = new AtomicLong();
+    private final AtomicLong flushedObservations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public JoinWriteBehindQueue(IPLog plugin) {
+        this.plugin = plugin;
+        this.capacity = Math.max(1, plugin.getConfig().getInt("data.write-behind.queue-capacity", 5000));
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("data.write-behind.batch-size", 100));
+        this.flushIntervalMillis = Math.max(50, plugin.getConfig().getLong("data.write-behind.flush-interval-ms", 2000));
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "IPLog-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        writer.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 加入一次登录观测，队列已满时返回false，由调用方自行处理
+     */
+    public boolean offer(JoinObservation observation) {
+        boolean triggerFlush = false;
+        synchronized (pending) {
+            List<JoinObservation> observations = pending.get(observation.getUuid());
+            if (observations == null) {
+                if (pending.size() >= capacity) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                observations = new ArrayList<>(2);
+                pending.put(observation.getUuid(), observations);
+            }
+            observations.add(observation);
+            pendingCount++;
+
+            if (pendingCount >= batchSize && !flushScheduled) {
+                flushScheduled = true;
+                triggerFlush = true;
+            }
+        }
+
+        if (triggerFlush) {
+            writer.execute(this::flushSafely);
+        }
+        return true;
+    }
+
+    /**
+     * 放回一组提交被拒绝的观测，不受容量限制，排在该玩家之后加入的观测之前，并立即安排一次写入
+     * 写线程上提交到已满的 storage 线程池时由写线程自己执行，不会再次被拒绝
+     *
+     * @throws RejectedExecutionException 写线程已经关闭
+     */
+    public void requeue(UUID uuid, List<JoinObservation> observations) {
+        boolean triggerFlush = false;
+        synchronized (pending) {
+            pending.computeIfAbsent(uuid, key -> new ArrayList<>(observations.size())).addAll(0, observations);
+            pendingCount += observations.size();
+            if (!flushScheduled) {
+                flushScheduled = true;
+                triggerFlush = true;
+            }
+        }
+
+        if (triggerFlush) {
+            writer.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * 立即写入所有待处理的观测（仅由写线程调用）
+     */
+    public void flush() {
+        while (true) {
+            Map<UUID, List<JoinObservation>> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // 按玩家分发，不同玩家并行写入，等待整批完成后再处理下一批
+            List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+            for (Map.Entry<UUID, List<JoinObservation>> entry : batch.entrySet()) {
+                futures.add(plugin.submitJoins(entry.getKey(), entry.getValue()));
+                flushedPlayers.incrementAndGet();
+                flushedObservations.addAndGet(entry.getValue().size());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+    }
+
+    /**
+     * 停止定时写入，最后一次写入也在写线程上完成：
+     * 关闭时在主线程上调用，主线程提交到已满的 storage 线程池会被拒绝，写线程上则由提交者自己执行
+     */
+    public void shutdown() {
+        writer.execute(this::flushSafely);
+        // 已提交的一次性任务在关闭后照常执行，定时任务被取消
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("等待写线程结束超时，剩余 " + getPendingCount() + " 条登录记录未写入");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pendingCount;
+        }
+    }
+
+    public long getFlushedPlayers() { return flushedPlayers.get(); }
+    public long getFlushedObservations() { return flushedObservations.get(); }
+    public long getRejected() { return rejected.get(); }
+
+    private Map<UUID, List<JoinObservation>> drain() {
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<UUID, List<JoinObservation>> batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            pendingCount = 0;
+            return batch;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "批量写入IP记录时出错: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 一次登录的观测结果，在登录时刻采集
+     */
+    public static final class JoinObservation {
+        private final UUID uuid;
+        private final String name;
+        private final byte[] address;
+        private final long timestamp;
+
+        public JoinObservation(UUID uuid, String name, byte[] address, long timestamp) {
+            this.uuid = uuid;
+            this.name = name;
+            this.address = address;
+            this.timestamp = timestamp;
+        }
+
+        public UUID getUuid() { return uuid; }
+        public String getName() { return name; }
+        public byte[] getAddress() { return address; }
+        public long getTimestamp() { return timestamp; }
+    }
+}
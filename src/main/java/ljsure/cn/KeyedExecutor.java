@@ -0,0 +1,41 @@
+package ljsure.cn;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 按键串行的执行器：同一个键的任务按提交顺序依次执行，不同键的任务在底层线程池中并行
+ * 每个键只保存最后一个任务的 future，任务链执行完后自动移除，没有全局锁
+ */
+public class KeyedExecutor<K> {
+    private final Executor executor;
+    private final ConcurrentHashMap<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    public KeyedExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 提交任务，在同一个键之前提交的任务全部完成（无论成功与否）后执行
+     * 线程池拒绝任务时返回的 future 以 RejectedExecutionException 失败，之后的任务照常执行
+     */
+    public CompletableFuture<Void> submit(K key, Runnable task) {
+        // 真正提交到线程池的动作放在 compute 之外：线程池满时任务可能在提交线程上直接执行，不能持有map的锁
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        CompletableFuture<Void> future = tails.compute(key, (k, tail) -> {
+            CompletableFuture<Void> ready = tail == null ? gate : gate.thenCombine(tail.handle((result, error) -> null), (a, b) -> null);
+            return ready.thenRunAsync(task, executor);
+        });
+        future.whenComplete((result, error) -> tails.remove(key, future));
+        gate.complete(null);
+        return future;
+    }
+
+    /**
+     * 当前有任务排队或执行中的键数量
+     */
+    public int getActiveKeys() {
+        return tails.size();
+    }
+}
@@ -0,0 +1,303 @@
+package ljsure.cn;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * 本地IP段数据库，不访问网络
+ * 从CSV加载（每行: 起始IP,结束IP,位置,ISP；IP可以是字面量或IPv4整数），
+ * 按起始地址排序后存入基本类型数组，查询时二分查找，每次查询只有一次数组二分和一次Map创建
+ */
+public class LocalGeoResolver implements GeoResolver {
+    private final IPLog plugin;
+    private final File databaseFile;
+
+    // 按起始地址排序的区间，16字节地址拆成高低两个long（无符号比较）
+    private volatile Ranges ranges = Ranges.EMPTY;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocalGeoResolver(IPLog plugin) {
+        this.plugin = plugin;
+        this.databaseFile = new File(plugin.getDataFolder(),
+                plugin.getConfig().getString("geo.local.file", "ip-ranges.csv"));
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> resolve(String ip, byte[] address) {
+        return CompletableFuture.completedFuture(find(address));
+    }
+
+    /**
+     * 同步查询，未收录的地址返回null
+     */
+    public Map<String, String> find(byte[] address) {
+        Ranges current = ranges;
+        int index = current.search(high(address), low(address));
+        if (index < 0) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+
+        Map<String, String> ipInfo = new HashMap<>(4);
+        String location = current.strings[current.locations[index]];
+        String isp = current.strings[current.isps[index]];
+        if (location != null) ipInfo.put("location", location);
+        if (isp != null) ipInfo.put("isp", isp);
+        return ipInfo;
+    }
+
+    /**
+     * 加载数据库文件，加载完成后整体替换旧数据
+     */
+    public void load() {
+        if (!databaseFile.exists()) {
+            plugin.getLogger().warning("本地IP数据库不存在: " + databaseFile.getName());
+            return;
+        }
+
+        long start = System.nanoTime();
+        Builder builder = new Builder();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(databaseFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", 4);
+                byte[] first = fields.length >= 2 ? parseAddress(fields[0]) : null;
+                byte[] last = fields.length >= 2 ? parseAddress(fields[1]) : null;
+                if (first == null || last == null) {
+                    // 表头或无法识别的行
+                    skipped++;
+                    continue;
+                }
+                builder.add(first, last, fields.length > 2 ? unquote(fields[2]) : null, fields.length > 3 ? unquote(fields[3]) : null);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "加载本地IP数据库失败: " + e.getMessage(), e);
+            return;
+        }
+
+        ranges = builder.build();
+        plugin.getLogger().info("已加载本地IP数据库: " + ranges.size + " 个IP段，跳过 " + skipped + " 行，耗时 " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public int size() {
+        return ranges.size;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    private static byte[] parseAddress(String field) {
+        String value = unquote(field);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        boolean numeric = true;
+        for (int i = 0; i < value.length() && numeric; i++) {
+            numeric = Character.isDigit(value.charAt(i));
+        }
+        if (numeric) {
+            // IPv4 的整数形式
+            long v;
+            try {
+                v = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (v < 0 || v > 0xFFFFFFFFL) {
+                return null;
+            }
+            return IPAddresses.toBytes((v >>> 24) + "." + ((v >>> 16) & 0xFF) + "." + ((v >>> 8) & 0xFF) + "." + (v & 0xFF));
+        }
+        return IPAddresses.toBytes(value);
+    }
+
+    private static String unquote(String field) {
+        String value = field.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static long high(byte[] address) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (address[i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static long low(byte[] address) {
+        long v = 0;
+        for (int i = 8; i < 16; i++) {
+            v = (v << 8) | (address[i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        int c = Long.compareUnsigned(aHigh, bHigh);
+        return c != 0 ? c : Long.compareUnsigned(aLow, bLow);
+    }
+
+    /**
+     * 不可变的区间表，加载时整体替换，查询无需加锁
+     */
+    private static final class Ranges {
+        static final Ranges EMPTY = new Ranges(0, new long[0], new long[0], new long[0], new long[0],
+                new int[0], new int[0], new String[0]);
+
+        final int size;
+        final long[] startHigh;
+        final long[] startLow;
+        final long[] endHigh;
+        final long[] endLow;
+        final int[] locations;
+        final int[] isps;
+        final String[] strings;
+
+        Ranges(int size, long[] startHigh, long[] startLow, long[] endHigh, long[] endLow,
+               int[] locations, int[] isps, String[] strings) {
+            this.size = size;
+            this.startHigh = startHigh;
+            this.startLow = startLow;
+            this.endHigh = endHigh;
+            this.endLow = endLow;
+            this.locations = locations;
+            this.isps = isps;
+            this.strings = strings;
+        }
+
+        /**
+         * 查找包含该地址的区间下标：先找最后一个起始地址不大于它的区间，再检查结束地址
+         */
+        int search(long high, long low) {
+            int lo = 0;
+            int hi = size - 1;
+            int candidate = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(startHigh[mid], startLow[mid], high, low) <= 0) {
+                    candidate = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            if (candidate < 0 || compare(high, low, endHigh[candidate], endLow[candidate]) > 0) {
+                return -1;
+            }
+            return candidate;
+        }
+    }
+
+    private static final class Builder {
+        private int size;
+        private long[] startHigh = new long[1024];
+        private long[] startLow = new long[1024];
+        private long[] endHigh = new long[1024];
+        private long[] endLow = new long[1024];
+        private int[] locations = new int[1024];
+        private int[] isps = new int[1024];
+
+        // 位置和ISP大量重复，按值去重后只保存下标；下标0表示null
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private String[] strings = new String[64];
+        private int stringCount = 1;
+
+        void add(byte[] first, byte[] last, String location, String isp) {
+            if (size == startHigh.length) {
+                int capacity = size * 2;
+                startHigh = Arrays.copyOf(startHigh, capacity);
+                startLow = Arrays.copyOf(startLow, capacity);
+                endHigh = Arrays.copyOf(endHigh, capacity);
+                endLow = Arrays.copyOf(endLow, capacity);
+                locations = Arrays.copyOf(locations, capacity);
+                isps = Arrays.copyOf(isps, capacity);
+            }
+            startHigh[size] = high(first);
+            startLow[size] = low(first);
+            endHigh[size] = high(last);
+            endLow[size] = low(last);
+            locations[size] = intern(location);
+            isps[size] = intern(isp);
+            size++;
+        }
+
+        Ranges build() {
+            // 按起始地址排序（数据文件通常已有序，此时只做一次检查）
+            Integer[] order = null;
+            for (int i = 1; i < size; i++) {
+                if (compare(startHigh[i - 1], startLow[i - 1], startHigh[i], startLow[i]) > 0) {
+                    order = new Integer[size];
+                    for (int j = 0; j < size; j++) {
+                        order[j] = j;
+                    }
+                    Arrays.sort(order, (a, b) -> compare(startHigh[a], startLow[a], startHigh[b], startLow[b]));
+                    break;
+                }
+            }
+
+            long[] sh = new long[size];
+            long[] sl = new long[size];
+            long[] eh = new long[size];
+            long[] el = new long[size];
+            int[] loc = new int[size];
+            int[] isp = new int[size];
+            for (int i = 0; i < size; i++) {
+                int from = order != null ? order[i] : i;
+                sh[i] = startHigh[from];
+                sl[i] = startLow[from];
+                eh[i] = endHigh[from];
+                el[i] = endLow[from];
+                loc[i] = locations[from];
+                isp[i] = isps[from];
+            }
+            return new Ranges(size, sh, sl, eh, el, loc, isp, Arrays.copyOf(strings, stringCount));
+        }
+
+        private int intern(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = stringIds.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount] = value;
+            stringIds.put(value, stringCount);
+            return stringCount++;
+        }
+    }
+}
@@ -0,0 +1,759 @@
+package ljsure.cn;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * 日志结构存储：每次保存只把玩家的变更追加到分段日志文件末尾
+ * 内存中维护 UUID -> 记录位置 的索引，后台定期把旧分段压缩为每个玩家一条快照
+ *
+ * 记录格式: [int 长度][int CRC32][byte 类型][long UUID高位][long UUID低位][数据]
+ */
+public class LogStorageHandler implements StorageHandler {
+    private static final byte TYPE_SNAPSHOT = 1; // 完整玩家数据
+    private static final byte TYPE_PLAYER = 2;   // 玩家基本信息变更
+    private static final byte TYPE_IP = 3;       // 单条IP记录新增或变更
+
+    private static final int HEADER_SIZE = 8;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String YAML_IMPORT_CHECKPOINT = "yaml-import.checkpoint";
+    // 导入旧YAML数据时每导入多少名玩家同步一次并记录检查点
+    private static final int YAML_IMPORT_CHECKPOINT_INTERVAL = 500;
+
+    private final JavaPlugin plugin;
+    private final IPLogExecutors executors;
+    private File directory;
+    private long maxSegmentBytes;
+    private boolean fsync;
+    private int compactionTriggerSegments;
+    private ScheduledFuture<?> compactionTask;
+
+    // 以下字段均由 lock 保护
+    private final Object lock = new Object();
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private int activeSegmentId;
+    private FileChannel activeChannel;
+    private long activeSize;
+    private final Map<UUID, long[]> index = new HashMap<>();
+    private final Map<UUID, String> names = new HashMap<>();
+    private final Map<String, UUID> nameIndex = new HashMap<>();
+    private final Map<String, Set<UUID>> ipIndex = new HashMap<>();
+    private final Map<String, Set<UUID>> subnetIndex = new HashMap<>();
+
+    public LogStorageHandler(JavaPlugin plugin, IPLogExecutors executors) {
+        this.plugin = plugin;
+        this.executors = executors;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        directory = new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.log.directory", "data-log"));
+        maxSegmentBytes = Math.max(1, plugin.getConfig().getLong("storage.log.segment-size-mb", 64)) * 1024L * 1024L;
+        fsync = plugin.getConfig().getBoolean("storage.log.fsync", false);
+        compactionTriggerSegments = Math.max(1, plugin.getConfig().getInt("storage.log.compaction-trigger-segments", 2));
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建日志存储目录: " + directory.getPath());
+        }
+
+        synchronized (lock) {
+            for (File file : listSegmentFiles()) {
+                int segmentId = parseSegmentId(file.getName());
+                segments.put(segmentId, FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            }
+
+            for (Map.Entry<Integer, FileChannel> entry : segments.entrySet()) {
+                scanSegment(entry.getKey(), entry.getValue(), entry.getKey().equals(segments.lastKey()));
+            }
+
+            if (segments.isEmpty()) {
+                openNewSegment(1);
+            } else {
+                activeSegmentId = segments.lastKey();
+                activeChannel = segments.get(activeSegmentId);
+                activeSize = activeChannel.size();
+            }
+        }
+
+        // 只在日志存储是正在使用的存储时导入旧的YAML数据；作为迁移目标打开时由迁移写入数据
+        if ("log".equalsIgnoreCase(plugin.getConfig().getString("storage.type", "yaml"))) {
+            importFromYaml();
+        }
+
+        long compactionMinutes = plugin.getConfig().getLong("storage.log.compaction-interval-minutes", 10);
+        if (compactionMinutes > 0) {
+            compactionTask = executors.scheduleAtFixedRate(executors.storage(), "压缩日志存储", this::compactSafely,
+                    compactionMinutes, TimeUnit.MINUTES);
+        }
+
+        plugin.getLogger().info("日志存储系统已初始化，玩家数: " + index.size() + "，分段数: " + segments.size());
+    }
+
+    @Override
+    public void shutdown() {
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+
+        synchronized (lock) {
+            for (FileChannel channel : segments.values()) {
+                try {
+                    channel.force(true);
+                    channel.close();
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "关闭日志分段时出错: " + e.getMessage(), e);
+                }
+            }
+            segments.clear();
+        }
+    }
+
+    @Override
+    public void savePlayerData(PlayerData playerData) {
+        List<IPRecord> dirtyRecords = playerData.getDirtyRecords();
+        if (!playerData.isDirty() && dirtyRecords.isEmpty()) {
+            return;
+        }
+
+        try {
+            synchronized (lock) {
+                appendPlayer(playerData, dirtyRecords);
+                if (fsync) {
+                    activeChannel.force(false);
+                }
+            }
+            playerData.markClean();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "写入日志存储失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void importPlayers(List<PlayerData> players) throws IOException {
+        // 整批追加后只同步一次
+        synchronized (lock) {
+            for (PlayerData playerData : players) {
+                appendPlayer(playerData, playerData.getDirtyRecords());
+            }
+            activeChannel.force(false);
+        }
+        for (PlayerData playerData : players) {
+            playerData.markClean();
+        }
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) {
+        // 按UUID文本排序，与其他存储类型的导出顺序一致
+        List<String> uuids = new ArrayList<>();
+        synchronized (lock) {
+            for (UUID uuid : index.keySet()) {
+                String text = uuid.toString();
+                if (afterUuid == null || text.compareTo(afterUuid) > 0) {
+                    uuids.add(text);
+                }
+            }
+        }
+        Collections.sort(uuids);
+
+        for (String uuid : uuids) {
+            PlayerData playerData = loadPlayerData(UUID.fromString(uuid));
+            if (playerData != null && !consumer.test(playerData)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 追加玩家的变更，调用方必须持有 lock
+     */
+    private void appendPlayer(PlayerData playerData, List<IPRecord> dirtyRecords) throws IOException {
+        UUID uuid = UUID.fromString(playerData.getUuid());
+        if (!index.containsKey(uuid)) {
+            // 新玩家直接写入完整快照
+            addPosition(uuid, append(TYPE_SNAPSHOT, uuid, encodeSnapshot(playerData)));
+            for (IPRecord record : playerData.getIpHistory()) {
+                indexIP(uuid, record.getIp());
+            }
+        } else {
+            if (playerData.isDirty()) {
+                addPosition(uuid, append(TYPE_PLAYER, uuid, encodePlayer(playerData)));
+            }
+            for (IPRecord record : dirtyRecords) {
+                addPosition(uuid, append(TYPE_IP, uuid, encodeRecord(record)));
+                indexIP(uuid, record.getIp());
+            }
+        }
+        updateName(uuid, playerData.getName());
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid) {
+        try {
+            synchronized (lock) {
+                return replay(uuid);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "从日志存储加载玩家数据失败: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName) {
+        UUID uuid;
+        synchronized (lock) {
+            uuid = nameIndex.get(playerName.toLowerCase(Locale.ROOT));
+        }
+        return uuid != null ? loadPlayerData(uuid) : null;
+    }
+
+    @Override
+    public IPRecord getLastIPRecord(UUID uuid) {
+        PlayerData playerData = loadPlayerData(uuid);
+        if (playerData != null && !playerData.getIpHistory().isEmpty()) {
+            return playerData.getIpHistory().get(0); // 第一条是最新的
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isIPRecorded(UUID uuid, String ip) {
+        PlayerData playerData = loadPlayerData(uuid);
+        return playerData != null && playerData.findExistingRecord(IPAddresses.toBytes(ip)) != null;
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        String key = subnet ? IPAddresses.subnetOf(ip) : IPAddresses.format(IPAddresses.toBytes(ip));
+        Map<UUID, String> accounts = new LinkedHashMap<>();
+        synchronized (lock) {
+            Set<UUID> uuids = key != null ? (subnet ? subnetIndex : ipIndex).get(key) : null;
+            if (uuids != null) {
+                for (UUID uuid : uuids) {
+                    accounts.put(uuid, names.get(uuid));
+                }
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * 将除当前写入分段外的所有分段压缩为每个玩家一条快照，然后删除旧分段
+     */
+    public void compact() throws IOException {
+        List<UUID> candidates = new ArrayList<>();
+        int firstActive;
+        synchronized (lock) {
+            firstActive = activeSegmentId;
+            if (segments.headMap(firstActive).size() < compactionTriggerSegments) {
+                return;
+            }
+            for (Map.Entry<UUID, long[]> entry : index.entrySet()) {
+                if (referencesBefore(entry.getValue(), firstActive)) {
+                    candidates.add(entry.getKey());
+                }
+            }
+        }
+
+        // 逐个玩家重写，每次只短暂持有锁，不阻塞正常写入
+        for (UUID uuid : candidates) {
+            synchronized (lock) {
+                long[] positions = index.get(uuid);
+                if (positions == null || !referencesBefore(positions, firstActive)) {
+                    continue;
+                }
+                PlayerData data = replay(uuid);
+                if (data != null) {
+                    index.put(uuid, new long[]{append(TYPE_SNAPSHOT, uuid, encodeSnapshot(data))});
+                }
+            }
+        }
+
+        synchronized (lock) {
+            activeChannel.force(true);
+            Iterator<Map.Entry<Integer, FileChannel>> it = segments.headMap(firstActive).entrySet().iterator();
+            int removed = 0;
+            while (it.hasNext()) {
+                Map.Entry<Integer, FileChannel> entry = it.next();
+                entry.getValue().close();
+                File file = segmentFile(entry.getKey());
+                if (!file.delete()) {
+                    plugin.getLogger().warning("无法删除已压缩的日志分段: " + file.getName());
+                }
+                it.remove();
+                removed++;
+            }
+            plugin.getLogger().info("日志存储压缩完成: 重写 " + candidates.size() + " 名玩家，删除 " + removed + " 个分段");
+        }
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "压缩日志存储失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 首次启用时从现有的 data.yml 导入所有玩家
+     */
+    /**
+     * 一次性导入旧的YAML数据，进度记录在日志目录的检查点文件中：
+     * 中断后从检查点继续，全部导入后标记完成，之后不再导入
+     */
+    private void importFromYaml() {
+        File checkpointFile = new File(directory, YAML_IMPORT_CHECKPOINT);
+        Properties checkpoint = new Properties();
+        try {
+            if (checkpointFile.exists()) {
+                try (Reader reader = Files.newBufferedReader(checkpointFile.toPath(), StandardCharsets.UTF_8)) {
+                    checkpoint.load(reader);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "读取YAML导入检查点失败，跳过导入: " + e.getMessage(), e);
+            return;
+        }
+        if (Boolean.parseBoolean(checkpoint.getProperty("done"))) {
+            return;
+        }
+
+        String afterUuid = checkpoint.getProperty("last-uuid");
+        File yamlFile = new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.data-file", "data.yml"));
+        // 没有检查点但已有数据：旧版本已经导入过
+        if (!yamlFile.exists() || (!checkpointFile.exists() && !index.isEmpty())) {
+            saveImportCheckpoint(checkpointFile, afterUuid, true);
+            return;
+        }
+        // 开始前先记录检查点，第一次同步之前中断也能识别为未完成的导入
+        saveImportCheckpoint(checkpointFile, afterUuid, false);
+
+        // 流式读取，导入大文件时不会把整个文件载入内存
+        plugin.getLogger().info(afterUuid == null
+                ? "正在从 " + yamlFile.getName() + " 导入玩家数据..."
+                : "从检查点继续从 " + yamlFile.getName() + " 导入玩家数据...");
+        int[] imported = {0};
+        int[] read = {0};
+        String[] lastUuid = {afterUuid};
+        boolean completed;
+        try {
+            boolean found = new YamlPlayerReader(yamlFile).read(afterUuid, data -> {
+                try {
+                    UUID playerUuid = UUID.fromString(data.getUuid());
+                    synchronized (lock) {
+                        addPosition(playerUuid, append(TYPE_SNAPSHOT, playerUuid, encodeSnapshot(data)));
+                        updateName(playerUuid, data.getName());
+                        for (IPRecord record : data.getIpHistory()) {
+                            indexIP(playerUuid, record.getIp());
+                        }
+                    }
+                    imported[0]++;
+                } catch (Exception e) {
+                    plugin.getLogger().warning("导入玩家 " + data.getUuid() + " 失败: " + e.getMessage());
+                }
+                lastUuid[0] = data.getUuid();
+                if (++read[0] % YAML_IMPORT_CHECKPOINT_INTERVAL == 0) {
+                    syncImportCheckpoint(checkpointFile, lastUuid[0]);
+                }
+                return true;
+            });
+            if (!found) {
+                plugin.getLogger().warning(yamlFile.getName() + " 中找不到检查点记录的玩家 " + afterUuid + "，文件可能已被修改，停止导入");
+            }
+            completed = true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "读取 " + yamlFile.getName() + " 失败: " + e.getMessage(), e);
+            completed = false;
+        }
+
+        try {
+            synchronized (lock) {
+                activeChannel.force(true);
+            }
+            saveImportCheckpoint(checkpointFile, lastUuid[0], completed);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "同步日志分段失败: " + e.getMessage(), e);
+        }
+        plugin.getLogger().info("已从 " + yamlFile.getName() + " 导入 " + imported[0] + " 名玩家" + (completed ? "" : "，下次启动时继续"));
+    }
+
+    /**
+     * 已写入的分段同步到磁盘后才推进检查点
+     */
+    private void syncImportCheckpoint(File checkpointFile, String lastUuid) {
+        try {
+            synchronized (lock) {
+                activeChannel.force(true);
+            }
+            saveImportCheckpoint(checkpointFile, lastUuid, false);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "同步日志分段失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 先写临时文件再替换，避免中断时留下不完整的检查点
+     */
+    private void saveImportCheckpoint(File file, String lastUuid, boolean done) {
+        Properties properties = new Properties();
+        if (lastUuid != null) {
+            properties.setProperty("last-uuid", lastUuid);
+        }
+        properties.setProperty("done", String.valueOf(done));
+
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                properties.store(writer, "IPLog YAML import checkpoint");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "保存YAML导入检查点失败: " + e.getMessage(), e);
+        }
+    }
+
+    // ---- 读写 ----
+
+    private long append(byte type, UUID uuid, byte[] payload) throws IOException {
+        int bodyLength = 1 + 16 + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0); // CRC 占位
+        buffer.put(type);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+        buffer.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+
+        if (activeSize > 0 && activeSize + buffer.remaining() > maxSegmentBytes) {
+            openNewSegment(activeSegmentId + 1);
+        }
+
+        long offset = activeSize;
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer, offset + buffer.position());
+        }
+        activeSize += HEADER_SIZE + bodyLength;
+        return ((long) activeSegmentId << OFFSET_BITS) | offset;
+    }
+
+    private DataInputStream readRecord(long position) throws IOException {
+        int segmentId = (int) (position >>> OFFSET_BITS);
+        long offset = position & OFFSET_MASK;
+        FileChannel channel = segments.get(segmentId);
+        if (channel == null) {
+            throw new IOException("日志分段不存在: " + segmentId);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, offset);
+        int bodyLength = header.getInt(0);
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        readFully(channel, body, offset + HEADER_SIZE);
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, bodyLength);
+        if ((int) crc.getValue() != header.getInt(4)) {
+            throw new IOException("日志记录校验失败: 分段 " + segmentId + " 偏移 " + offset);
+        }
+        return new DataInputStream(new ByteArrayInputStream(body.array()));
+    }
+
+    private PlayerData replay(UUID uuid) throws IOException {
+        long[] positions = index.get(uuid);
+        if (positions == null) {
+            return null;
+        }
+
+        PlayerData data = null;
+        for (long position : positions) {
+            DataInputStream in = readRecord(position);
+            byte type = in.readByte();
+            in.skipBytes(16);
+
+            switch (type) {
+                case TYPE_SNAPSHOT:
+                    data = new PlayerData(uuid.toString(), null);
+                    decodePlayer(in, data);
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        data.getIpHistory().add(decodeRecord(in));
+                    }
+                    break;
+                case TYPE_PLAYER:
+                    if (data == null) {
+                        data = new PlayerData(uuid.toString(), null);
+                    }
+                    decodePlayer(in, data);
+                    break;
+                case TYPE_IP:
+                    if (data == null) {
+                        data = new PlayerData(uuid.toString(), null);
+                    }
+                    IPRecord record = decodeRecord(in);
+                    IPRecord existing = data.findExistingRecord(record.getAddress());
+                    if (existing != null) {
+                        data.getIpHistory().set(data.getIpHistory().indexOf(existing), record);
+                    } else {
+                        data.addIPRecord(record);
+                    }
+                    break;
+                default:
+                    throw new IOException("未知的日志记录类型: " + type);
+            }
+        }
+
+        if (data != null) {
+            int maxSize = plugin.getConfig().getInt("data.max-history-size", 100);
+            List<IPRecord> history = data.getIpHistory();
+            if (history.size() > maxSize) {
+                history.subList(maxSize, history.size()).clear();
+            }
+            data.markClean();
+        }
+        return data;
+    }
+
+    /**
+     * 启动时顺序扫描分段重建索引，最后一个分段末尾的不完整记录会被截断
+     */
+    private void scanSegment(int segmentId, FileChannel channel, boolean isLast) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        File file = segmentFile(segmentId);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            byte[] body = new byte[256];
+            CRC32 crc = new CRC32();
+            while (offset + HEADER_SIZE <= size) {
+                int bodyLength = in.readInt();
+                int checksum = in.readInt();
+                if (bodyLength < 17 || offset + HEADER_SIZE + bodyLength > size) {
+                    break;
+                }
+                if (body.length < bodyLength) {
+                    body = new byte[Math.max(bodyLength, body.length * 2)];
+                }
+                in.readFully(body, 0, bodyLength);
+                crc.reset();
+                crc.update(body, 0, bodyLength);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body, 0, bodyLength));
+                byte type = record.readByte();
+                UUID uuid = new UUID(record.readLong(), record.readLong());
+                addPosition(uuid, ((long) segmentId << OFFSET_BITS) | offset);
+                if (type == TYPE_SNAPSHOT || type == TYPE_PLAYER) {
+                    PlayerData player = new PlayerData(uuid.toString(), null);
+                    decodePlayer(record, player);
+                    updateName(uuid, player.getName());
+                    if (type == TYPE_SNAPSHOT) {
+                        int count = record.readInt();
+                        for (int i = 0; i < count; i++) {
+                            indexIP(uuid, decodeRecord(record).getIp());
+                        }
+                    }
+                } else if (type == TYPE_IP) {
+                    indexIP(uuid, IPAddresses.format(readAddress(record)));
+                }
+                offset += HEADER_SIZE + bodyLength;
+            }
+        }
+
+        if (offset < size) {
+            if (isLast) {
+                plugin.getLogger().warning("日志分段 " + file.getName() + " 末尾存在不完整记录，已截断 " + (size - offset) + " 字节");
+                channel.truncate(offset);
+            } else {
+                plugin.getLogger().warning("日志分段 " + file.getName() + " 在偏移 " + offset + " 处损坏，之后的记录已忽略");
+            }
+        }
+    }
+
+    private void openNewSegment(int segmentId) throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(true);
+        }
+        FileChannel channel = FileChannel.open(segmentFile(segmentId).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segmentId, channel);
+        activeSegmentId = segmentId;
+        activeChannel = channel;
+        activeSize = channel.size();
+    }
+
+    private void addPosition(UUID uuid, long position) {
+        long[] positions = index.get(uuid);
+        if (positions == null) {
+            index.put(uuid, new long[]{position});
+        } else {
+            long[] extended = Arrays.copyOf(positions, positions.length + 1);
+            extended[positions.length] = position;
+            index.put(uuid, extended);
+        }
+    }
+
+    private void updateName(UUID uuid, String name) {
+        if (name == null) {
+            return;
+        }
+        String oldName = names.put(uuid, name);
+        if (oldName != null && !oldName.equalsIgnoreCase(name)) {
+            nameIndex.remove(oldName.toLowerCase(Locale.ROOT), uuid);
+        }
+        nameIndex.put(name.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    private void indexIP(UUID uuid, String ip) {
+        if (ip == null) {
+            return;
+        }
+        ipIndex.computeIfAbsent(ip, k -> new HashSet<>(2)).add(uuid);
+        String subnet = IPAddresses.subnetOf(ip);
+        if (subnet != null) {
+            subnetIndex.computeIfAbsent(subnet, k -> new HashSet<>(2)).add(uuid);
+        }
+    }
+
+    private static boolean referencesBefore(long[] positions, int segmentId) {
+        for (long position : positions) {
+            if ((int) (position >>> OFFSET_BITS) < segmentId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("日志记录不完整");
+            }
+        }
+    }
+
+    private File segmentFile(int segmentId) {
+        return new File(directory, SEGMENT_PREFIX + String.format("%06d", segmentId) + SEGMENT_SUFFIX);
+    }
+
+    private File[] listSegmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingInt(file -> parseSegmentId(file.getName())));
+        return files;
+    }
+
+    private static int parseSegmentId(String fileName) {
+        return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // ---- 编码 ----
+
+    private static byte[] encodeSnapshot(PlayerData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + data.getIpHistory().size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writePlayer(out, data);
+        out.writeInt(data.getIpHistory().size());
+        for (IPRecord record : data.getIpHistory()) {
+            writeRecord(out, record);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodePlayer(PlayerData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        writePlayer(new DataOutputStream(bytes), data);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRecord(IPRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeRecord(new DataOutputStream(bytes), record);
+        return bytes.toByteArray();
+    }
+
+    private static void writePlayer(DataOutputStream out, PlayerData data) throws IOException {
+        writeNullableUTF(out, data.getName());
+        writeAddress(out, data.getCurrentAddress());
+        writeNullableUTF(out, data.getCurrentLocation());
+        writeNullableUTF(out, data.getCurrentISP());
+        out.writeLong(data.getLastSeen());
+    }
+
+    private static void decodePlayer(DataInputStream in, PlayerData data) throws IOException {
+        data.setName(readNullableUTF(in));
+        data.setCurrentAddress(readAddress(in));
+        data.setCurrentLocation(readNullableUTF(in));
+        data.setCurrentISP(readNullableUTF(in));
+        data.setLastSeen(in.readLong());
+    }
+
+    private static void writeRecord(DataOutputStream out, IPRecord record) throws IOException {
+        writeAddress(out, record.getAddress());
+        out.writeLong(record.getFirstSeen());
+        out.writeLong(record.getLastSeen());
+        writeNullableUTF(out, record.getLocation());
+        writeNullableUTF(out, record.getIsp());
+    }
+
+    private static IPRecord decodeRecord(DataInputStream in) throws IOException {
+        IPRecord record = new IPRecord(readAddress(in), in.readLong(), in.readLong());
+        record.setLocation(readNullableUTF(in));
+        record.setIsp(readNullableUTF(in));
+        return record;
+    }
+
+    // 地址固定为16字节，前置1字节标记是否为空
+    private static byte[] readAddress(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] address = new byte[16];
+        in.readFully(address);
+        return address;
+    }
+
+    private static void writeAddress(DataOutputStream out, byte[] address) throws IOException {
+        out.writeBoolean(address != null);
+        if (address != null) {
+            out.write(address);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
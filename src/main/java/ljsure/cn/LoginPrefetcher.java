@@ -0,0 +1,184 @@
+package ljsure.cn;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * 登录预取：在 AsyncPlayerPreLoginEvent 阶段提前加载玩家数据并查询IP地理信息，
+ * 玩家真正进入服务器后写入登录记录时直接使用预取结果
+ * 加载任务与玩家的其他更新在同一个按UUID串行的队列中执行，取到的数据不会早于之前的写入；
+ * 登录被拒绝、玩家数据在预取后被其他任务修改、或超过 ttl-seconds 未被使用时丢弃预取结果
+ */
+public class LoginPrefetcher {
+    private static final Metrics.Counter HITS = Metrics.counter("join.prefetch", "登录预取的使用结果", "result", "hit");
+    private static final Metrics.Counter MISSES = Metrics.counter("join.prefetch", "登录预取的使用结果", "result", "miss");
+    private static final Metrics.Counter DISCARDED = Metrics.counter("join.prefetch", "登录预取的使用结果", "result", "discarded");
+
+    private final IPLog plugin;
+    private final KeyedExecutor<UUID> playerUpdates;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<UUID, Prefetch> entries = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> sweepTask;
+
+    public LoginPrefetcher(IPLog plugin, KeyedExecutor<UUID> playerUpdates) {
+        this.plugin = plugin;
+        this.playerUpdates = playerUpdates;
+        this.maxEntries = Math.max(1, plugin.getConfig().getInt("data.prefetch.max-entries", 1000));
+        this.ttlMillis = Math.max(1, plugin.getConfig().getLong("data.prefetch.ttl-seconds", 60)) * 1000L;
+    }
+
+    public void start() {
+        IPLogExecutors executors = plugin.getExecutors();
+        sweepTask = executors.scheduleAtFixedRate(executors.storage(), "清理过期的登录预取", this::sweep,
+                Math.max(1000L, ttlMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+        clear();
+    }
+
+    /**
+     * 为即将进入的玩家开始预取，在登录线程上调用，不等待任何结果
+     */
+    public void prefetch(UUID uuid, byte[] address) {
+        if (entries.size() >= maxEntries && !entries.containsKey(uuid)) {
+            return;
+        }
+        Prefetch prefetch = new Prefetch(address, TimeService.currentTimeMillis());
+        Prefetch previous = entries.put(uuid, prefetch);
+        if (previous != null) {
+            previous.discard();
+        }
+
+        try {
+            playerUpdates.submit(uuid, () -> load(uuid, prefetch));
+        } catch (RejectedExecutionException e) {
+            // 插件正在关闭
+            entries.remove(uuid, prefetch);
+        }
+    }
+
+    private void load(UUID uuid, Prefetch prefetch) {
+        if (prefetch.data.isDone()) {
+            return;
+        }
+        PlayerData playerData;
+        try {
+            playerData = plugin.getStorageHandler().loadPlayerData(uuid, plugin.getConfig().getInt("data.max-history-size", 100));
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "预取玩家 " + uuid + " 的数据时出错: " + e.getMessage(), e);
+            prefetch.data.completeExceptionally(e);
+            return;
+        }
+        prefetch.data.complete(playerData);
+
+        // 已记录且位置、ISP齐全的IP不再查询，避免为老玩家消耗API配额
+        if (!plugin.getConfig().getBoolean("features.query-ip-location", true)) {
+            return;
+        }
+        IPRecord existing = playerData != null ? playerData.findExistingRecord(prefetch.address) : null;
+        if (existing != null && existing.getLocation() != null && existing.getIsp() != null) {
+            return;
+        }
+        String ip = IPAddresses.format(prefetch.address);
+        Map<String, String> cached = plugin.getGeoLookup().getCached(ip);
+        prefetch.geo = cached != null ? CompletableFuture.completedFuture(cached) : plugin.getGeoLookup().lookup(ip);
+    }
+
+    /**
+     * 取出已完成的预取结果；尚未加载完成的预取留给之后的登录，返回null时调用方自行加载
+     */
+    public Prefetch take(UUID uuid) {
+        Prefetch prefetch = entries.get(uuid);
+        if (prefetch == null || !prefetch.data.isDone()) {
+            MISSES.increment();
+            return null;
+        }
+        entries.remove(uuid, prefetch);
+        if (prefetch.data.isCompletedExceptionally()) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        return prefetch;
+    }
+
+    /**
+     * 登录被拒绝，或玩家数据已被其他任务修改时丢弃预取结果
+     */
+    public void discard(UUID uuid) {
+        Prefetch prefetch = entries.remove(uuid);
+        if (prefetch != null) {
+            prefetch.discard();
+        }
+    }
+
+    public void clear() {
+        for (UUID uuid : entries.keySet()) {
+            discard(uuid);
+        }
+    }
+
+    private void sweep() {
+        long cutoff = TimeService.currentTimeMillis() - ttlMillis;
+        entries.forEach((uuid, prefetch) -> {
+            if (prefetch.createdAt < cutoff && entries.remove(uuid, prefetch)) {
+                prefetch.discard();
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 一名玩家的预取结果
+     */
+    public static final class Prefetch {
+        private final byte[] address;
+        private final long createdAt;
+        private final CompletableFuture<PlayerData> data = new CompletableFuture<>();
+        private volatile CompletableFuture<Map<String, String>> geo;
+
+        private Prefetch(byte[] address, long createdAt) {
+            this.address = address;
+            this.createdAt = createdAt;
+        }
+
+        private void discard() {
+            data.cancel(false);
+            DISCARDED.increment();
+        }
+
+        /**
+         * 预取时的玩家数据，新玩家为null
+         */
+        public PlayerData getPlayerData() {
+            return data.getNow(null);
+        }
+
+        /**
+         * 已经查询完成的地理信息，地址与预取时不同或查询尚未完成时返回null
+         */
+        public Map<String, String> getGeoInfo(byte[] address) {
+            CompletableFuture<Map<String, String>> future = geo;
+            if (future == null || !future.isDone() || !Arrays.equals(this.address, address)) {
+                return null;
+            }
+            return future.getNow(null);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ljsure.cn;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 插件内部的性能统计：耗时直方图、计数器和读取当前值的指标（如队列长度）
+ * 各处通过名字取得统计项后直接记录，metrics.enabled 关闭时记录操作不做任何事
+ * 名字使用点分隔（如 storage.load），导出为 Prometheus 格式时转换为下划线
+ */
+public final class Metrics {
+    private static volatile boolean enabled = true;
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * 根据 metrics.enabled 启用或关闭统计
+     */
+    public static void install(FileConfiguration config) {
+        enabled = config.getBoolean("metrics.enabled", true);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static LatencyHistogram histogram(String name, String description) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram(key, description));
+    }
+
+    public static Counter counter(String name, String description) {
+        return counter(name, description, null, null);
+    }
+
+    /**
+     * 带一个标签的计数器，如 geo.api.responses{status="200"}
+     */
+    public static Counter counter(String name, String description, String label, String value) {
+        String key = label != null ? name + "{" + label + "=\"" + value + "\"}" : name;
+        return counters.computeIfAbsent(key, k -> new Counter(name, description, label, value));
+    }
+
+    /**
+     * 导出时才读取当前值的指标，同名同标签的指标以最后注册的为准
+     */
+    public static Gauge gauge(String name, String description, String label, String value, LongSupplier supplier) {
+        Gauge gauge = new Gauge(name, description, label, value, supplier);
+        gauges.put(gauge.getKey(), gauge);
+        return gauge;
+    }
+
+    public static List<LatencyHistogram> getHistograms() {
+        List<LatencyHistogram> list = new ArrayList<>(histograms.values());
+        list.sort(Comparator.comparing(LatencyHistogram::getName));
+        return list;
+    }
+
+    public static List<Counter> getCounters() {
+        List<Counter> list = new ArrayList<>(counters.values());
+        list.sort(Comparator.comparing(Counter::getKey));
+        return list;
+    }
+
+    public static List<Gauge> getGauges() {
+        List<Gauge> list = new ArrayList<>(gauges.values());
+        list.sort(Comparator.comparing(Gauge::getKey));
+        return list;
+    }
+
+    /**
+     * Prometheus 文本格式：直方图导出为 summary（p50/p99）加上最大值
+     */
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (LatencyHistogram histogram : getHistograms()) {
+            String metric = "iplog_" + sanitize(histogram.getName()) + "_seconds";
+            out.append("# HELP ").append(metric).append(' ').append(histogram.getDescription()).append('\n');
+            out.append("# TYPE ").append(metric).append(" summary\n");
+            out.append(metric).append("{quantile=\"0.5\"} ").append(seconds(histogram.quantileNanos(0.5))).append('\n');
+            out.append(metric).append("{quantile=\"0.99\"} ").append(seconds(histogram.quantileNanos(0.99))).append('\n');
+            out.append(metric).append("_sum ").append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append(metric).append("_count ").append(histogram.getCount()).append('\n');
+            out.append("# TYPE ").append(metric).append("_max gauge\n");
+            out.append(metric).append("_max ").append(seconds(histogram.getMaxNanos())).append('\n');
+        }
+
+        String lastName = null;
+        for (Counter counter : getCounters()) {
+            String metric = "iplog_" + sanitize(counter.getName()) + "_total";
+            if (!metric.equals(lastName)) {
+                out.append("# HELP ").append(metric).append(' ').append(counter.getDescription()).append('\n');
+                out.append("# TYPE ").append(metric).append(" counter\n");
+                lastName = metric;
+            }
+            out.append(metric);
+            if (counter.getLabel() != null) {
+                out.append('{').append(counter.getLabel()).append("=\"").append(counter.getLabelValue()).append("\"}");
+            }
+            out.append(' ').append(counter.get()).append('\n');
+        }
+
+        lastName = null;
+        for (Gauge gauge : getGauges()) {
+            String metric = "iplog_" + sanitize(gauge.getName());
+            if (!metric.equals(lastName)) {
+                out.append("# HELP ").append(metric).append(' ').append(gauge.getDescription()).append('\n');
+                out.append("# TYPE ").append(metric).append(" gauge\n");
+                lastName = metric;
+            }
+            out.append(metric);
+            if (gauge.getLabel() != null) {
+                out.append('{').append(gauge.getLabel()).append("=\"").append(gauge.getLabelValue()).append("\"}");
+            }
+            out.append(' ').append(gauge.get()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String sanitize(String name) {
+        return name.replace('.', '_').replace('-', '_');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * 单调递增的计数器
+     */
+    public static final class Counter {
+        private final String name;
+        private final String description;
+        private final String label;
+        private final String labelValue;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String description, String label, String labelValue) {
+            this.name = name;
+            this.description = description;
+            this.label = label;
+            this.labelValue = labelValue;
+        }
+
+        public void increment() {
+            if (enabled) {
+                value.increment();
+            }
+        }
+
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public String getLabel() { return label; }
+        public String getLabelValue() { return labelValue; }
+        public long get() { return value.sum(); }
+
+        String getKey() {
+            return label != null ? name + "{" + label + "=\"" + labelValue + "\"}" : name;
+        }
+    }
+
+    /**
+     * 读取当前值的指标，值由注册时提供的函数计算
+     */
+    public static final class Gauge {
+        private final String name;
+        private final String description;
+        private final String label;
+        private final String labelValue;
+        private final LongSupplier supplier;
+
+        private Gauge(String name, String description, String label, String labelValue, LongSupplier supplier) {
+            this.name = name;
+            this.description = description;
+            this.label = label;
+            this.labelValue = labelValue;
+            this.supplier = supplier;
+        }
+
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public String getLabel() { return label; }
+        public String getLabelValue() { return labelValue; }
+        public long get() { return supplier.getAsLong(); }
+
+        String getKey() {
+            return label != null ? name + "{" + label + "=\"" + labelValue + "\"}" : name;
+        }
+    }
+}
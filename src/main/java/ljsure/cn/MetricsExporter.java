@@ -0,0 +1,99 @@
+package ljsure.cn;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * 导出性能统计：本机 HTTP 接口（Prometheus 文本格式）和/或定期写入文件
+ * HTTP 接口只监听 127.0.0.1，由本机的采集程序访问
+ */
+public class MetricsExporter {
+    private final JavaPlugin plugin;
+    private final IPLogExecutors executors;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ScheduledFuture<?> dumpTask;
+
+    public MetricsExporter(JavaPlugin plugin, IPLogExecutors executors) {
+        this.plugin = plugin;
+        this.executors = executors;
+    }
+
+    public void start() {
+        if (plugin.getConfig().getBoolean("metrics.prometheus.enabled", false)) {
+            int port = plugin.getConfig().getInt("metrics.prometheus.port", 9273);
+            try {
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+                server.createContext("/metrics", this::handle);
+                serverExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "IPLog-Metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                server.setExecutor(serverExecutor);
+                server.start();
+                plugin.getLogger().info("性能统计接口已启动: http://127.0.0.1:" + port + "/metrics");
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "启动性能统计接口失败: " + e.getMessage(), e);
+                server = null;
+            }
+        }
+
+        if (plugin.getConfig().getBoolean("metrics.file.enabled", false)) {
+            long seconds = Math.max(1, plugin.getConfig().getLong("metrics.file.interval-seconds", 60));
+            dumpTask = executors.scheduleAtFixedRate(executors.storage(), "导出性能统计", this::dump, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void shutdown() {
+        if (dumpTask != null) {
+            dumpTask.cancel(false);
+        }
+        if (server != null) {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 先写临时文件再替换，读取方不会看到写了一半的内容
+     */
+    private void dump() {
+        File file = new File(plugin.getDataFolder(), plugin.getConfig().getString("metrics.file.path", "metrics.prom"));
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(temp.toPath(), Metrics.toPrometheus().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "写入性能统计文件失败: " + e.getMessage(), e);
+        }
+    }
+}
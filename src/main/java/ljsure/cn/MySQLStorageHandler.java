@@ -1,24 +1,32 @@
 package ljsure.cn;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.sql.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Properties;
-import java.util.TimeZone;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 public class MySQLStorageHandler implements StorageHandler {
+    // 迁移导入时每条多行 INSERT 语句的最大行数
+    private static final int IMPORT_ROWS_PER_STATEMENT = 1000;
+    // 导入的行不早于已有的行（已有行没有时间时视为更新）
+    private static final String IMPORT_IS_NEWER = "IFNULL(VALUES(last_seen) >= last_seen, TRUE)";
+    private static final LatencyHistogram POOL_WAIT = Metrics.histogram("mysql.pool.wait", "从连接池取得连接的等待时间");
+    private static final Metrics.Counter POOL_TIMEOUTS = Metrics.counter("mysql.pool.timeouts", "等待连接超时的次数");
+
     private final JavaPlugin plugin;
-    private final BlockingQueue<Connection> connectionPool;
-    private final int poolSize = 5;
+    private final IPLogExecutors executors;
+    private HikariDataSource dataSource;
     private final String tablePrefix;
-    private final SimpleDateFormat dateFormat;
+    private RetentionEngine retentionEngine;
 
     // 数据库连接参数
     private final String host;
@@ -29,11 +37,9 @@ public class MySQLStorageHandler implements StorageHandler {
     private final boolean ssl;
     private final String connectionUrl;
 
-    public MySQLStorageHandler(JavaPlugin plugin) {
+    public MySQLStorageHandler(JavaPlugin plugin, IPLogExecutors executors) {
         this.plugin = plugin;
-        this.connectionPool = new ArrayBlockingQueue<>(poolSize);
-        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        this.dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
+        this.executors = executors;
 
         // 读取配置
         this.host = plugin.getConfig().getString("storage.mysql.host", "localhost");
@@ -49,10 +55,7 @@ public class MySQLStorageHandler implements StorageHandler {
                 "?useSSL=" + ssl +
                 "&useUnicode=true" +
                 "&characterEncoding=UTF-8" +
-                "&autoReconnect=true" +
-                "&failOverReadOnly=false" +
-                "&maxReconnects=10" +
-                "&initialTimeout=5" +
+                "&rewriteBatchedStatements=true" +
                 "&connectTimeout=30000" +
                 "&socketTimeout=30000";
     }
@@ -61,102 +64,101 @@ public class MySQLStorageHandler implements StorageHandler {
     public void initialize() throws Exception {
         plugin.getLogger().info("初始化MySQL连接池: " + host + ":" + port + "/" + database);
 
-        // 初始化连接池
-        for (int i = 0; i < poolSize; i++) {
-            Connection connection = createConnection();
-            if (connection != null) {
-                connectionPool.offer(connection);
-            }
-        }
-
-        if (connectionPool.size() == 0) {
-            throw new Exception("无法创建任何数据库连接");
-        }
+        dataSource = new HikariDataSource(createPoolConfig());
 
         // 创建表结构
         try (Connection connection = getConnection()) {
             createTables(connection);
-            plugin.getLogger().info("MySQL存储系统已初始化，连接池大小: " + connectionPool.size());
+            plugin.getLogger().info("MySQL存储系统已初始化，" + getPoolStatus());
         }
+
+        // 历史记录的数量和时间限制由后台定时清理，不在保存时执行
+        retentionEngine = new RetentionEngine(plugin, executors, dataSource, tablePrefix);
+        retentionEngine.start();
     }
 
     @Override
     public void shutdown() {
+        if (retentionEngine != null) {
+            retentionEngine.stop();
+        }
+
         plugin.getLogger().info("关闭MySQL连接池...");
-        while (!connectionPool.isEmpty()) {
-            try {
-                Connection connection = connectionPool.take();
-                if (connection != null && !connection.isClosed()) {
-                    connection.close();
-                }
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.WARNING, "关闭数据库连接时出错: " + e.getMessage(), e);
-            }
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
         }
         plugin.getLogger().info("MySQL连接池已关闭");
     }
 
-    private Connection createConnection() throws SQLException {
-        try {
-            Properties props = new Properties();
-            props.setProperty("user", username);
-            props.setProperty("password", password);
-            props.setProperty("autoReconnect", "true");
-            props.setProperty("maxReconnects", "10");
-            props.setProperty("initialTimeout", "5");
-
-            Connection connection = DriverManager.getConnection(connectionUrl, props);
-
-            // 测试连接是否有效
-            try (Statement stmt = connection.createStatement()) {
-                stmt.executeQuery("SELECT 1");
-            }
+    /**
+     * 根据 storage.mysql.connection-pool 配置构建连接池参数
+     */
+    private HikariConfig createPoolConfig() {
+        String poolPath = "storage.mysql.connection-pool.";
+        HikariConfig poolConfig = new HikariConfig();
+        poolConfig.setPoolName("IPLog-MySQL");
+        poolConfig.setJdbcUrl(connectionUrl);
+        poolConfig.setUsername(username);
+        poolConfig.setPassword(password);
+
+        poolConfig.setMaximumPoolSize(plugin.getConfig().getInt(poolPath + "maximum-pool-size", 10));
+        poolConfig.setMinimumIdle(plugin.getConfig().getInt(poolPath + "minimum-idle", 2));
+        poolConfig.setConnectionTimeout(plugin.getConfig().getLong(poolPath + "connection-timeout", 30000));
+        poolConfig.setIdleTimeout(plugin.getConfig().getLong(poolPath + "idle-timeout", 600000));
+        poolConfig.setMaxLifetime(plugin.getConfig().getLong(poolPath + "max-lifetime", 1800000));
+
+        // 连接泄漏检测：连接借出超过该时间未归还时打印警告（0 表示关闭）
+        poolConfig.setLeakDetectionThreshold(plugin.getConfig().getLong(poolPath + "leak-detection-threshold", 60000));
+        poolConfig.setRegisterMbeans(plugin.getConfig().getBoolean(poolPath + "register-mbeans", false));
+
+        // 预编译语句缓存（由MySQL驱动在每个连接上缓存）
+        int statementCacheSize = plugin.getConfig().getInt(poolPath + "prepared-statement-cache-size", 250);
+        if (statementCacheSize > 0) {
+            poolConfig.addDataSourceProperty("cachePrepStmts", "true");
+            poolConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            poolConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            poolConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        }
+        return poolConfig;
+    }
 
-            return connection;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "创建数据库连接失败: " + e.getMessage(), e);
-            throw e;
+    /**
+     * 连接池当前状态，用于命令显示和日志
+     */
+    public String getPoolStatus() {
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return "连接池未启动";
         }
+        return "连接池: 活跃 " + pool.getActiveConnections() +
+                ", 空闲 " + pool.getIdleConnections() +
+                ", 总数 " + pool.getTotalConnections() +
+                ", 等待中 " + pool.getThreadsAwaitingConnection();
     }
 
-    private Connection getConnection() throws SQLException {
+    /**
+     * 从连接池借出连接，用完后关闭即归还；包内可见供基准测试使用同一个连接池
+     */
+    Connection getConnection() throws SQLException {
+        long start = POOL_WAIT.start();
         try {
-            // 尝试从连接池获取连接，最多等待5秒
-            Connection connection = connectionPool.poll(5, TimeUnit.SECONDS);
-
-            if (connection == null) {
-                // 连接池为空，创建新连接
-                plugin.getLogger().warning("连接池为空，创建新连接");
-                return createConnection();
-            }
-
-            // 检查连接是否有效
-            if (connection.isClosed() || !connection.isValid(2)) {
-                plugin.getLogger().info("连接无效，创建新连接");
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    // 忽略关闭异常
-                }
-                return createConnection();
-            }
-
-            return connection;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SQLException("获取数据库连接时被中断", e);
+            return dataSource.getConnection();
+        } catch (SQLTransientConnectionException e) {
+            // 等待超过 connection-timeout 仍没有可用连接
+            POOL_TIMEOUTS.increment();
+            throw e;
+        } finally {
+            POOL_WAIT.stop(start);
         }
     }
 
     private void returnConnection(Connection connection) {
         if (connection != null) {
-            // 如果连接池已满，直接关闭连接
-            if (!connectionPool.offer(connection)) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    plugin.getLogger().log(Level.WARNING, "关闭数据库连接时出错: " + e.getMessage(), e);
-                }
+            // 关闭即归还给连接池
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "归还数据库连接时出错: " + e.getMessage(), e);
             }
         }
     }
@@ -168,10 +170,10 @@ public class MySQLStorageHandler implements StorageHandler {
             String createPlayersTable = "CREATE TABLE IF NOT EXISTS " + playersTable + " (" +
                     "uuid VARCHAR(36) PRIMARY KEY, " +
                     "name VARCHAR(16) NOT NULL, " +
-                    "current_ip VARCHAR(45), " +
+                    "current_ip VARBINARY(16), " +
                     "current_location VARCHAR(100), " +
                     "current_isp VARCHAR(100), " +
-                    "last_seen DATETIME, " +
+                    "last_seen DATETIME(3), " +
                     "created_at DATETIME DEFAULT CURRENT_TIMESTAMP, " +
                     "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
                     "INDEX idx_name (name)" +
@@ -183,20 +185,214 @@ public class MySQLStorageHandler implements StorageHandler {
             String createIPHistoryTable = "CREATE TABLE IF NOT EXISTS " + ipHistoryTable + " (" +
                     "id INT AUTO_INCREMENT PRIMARY KEY, " +
                     "player_uuid VARCHAR(36) NOT NULL, " +
-                    "ip VARCHAR(45) NOT NULL, " +
+                    "ip VARBINARY(16) NOT NULL, " +
                     "location VARCHAR(100), " +
                     "isp VARCHAR(100), " +
-                    "first_seen DATETIME, " +
-                    "last_seen DATETIME, " +
+                    "first_seen DATETIME(3), " +
+                    "last_seen DATETIME(3), " +
                     "INDEX idx_player_uuid (player_uuid), " +
                     "INDEX idx_ip (ip), " +
                     "INDEX idx_last_seen (last_seen), " +
+                    "INDEX idx_player_last_seen (player_uuid, last_seen), " +
                     "UNIQUE KEY unique_player_ip (player_uuid, ip)" +
                     ")";
             stmt.execute(createIPHistoryTable);
 
             plugin.getLogger().info("数据库表创建完成");
         }
+
+        migrateBinaryAddresses(connection);
+        ensureMillisPrecision(connection, tablePrefix + "players", "last_seen");
+        ensureMillisPrecision(connection, tablePrefix + "ip_history", "first_seen", "last_seen");
+        ensureIndex(connection, tablePrefix + "ip_history", "idx_player_last_seen", "player_uuid, last_seen");
+    }
+
+    /**
+     * 为旧版本创建的表补建索引
+     */
+    private void ensureIndex(Connection connection, String table, String index, String columns) throws SQLException {
+        String sql = "SELECT 1 FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ? LIMIT 1";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, index);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD INDEX " + index + " (" + columns + ")");
+        }
+        plugin.getLogger().info("已为 " + table + " 添加索引 " + index);
+    }
+
+    /**
+     * 旧版本的时间列是不带小数秒的 DATETIME，每次写入都会把毫秒舍入到秒
+     * 精度不足3位的列改为 DATETIME(3)，同一张表的列在一条 ALTER 中修改，只重建一次表
+     */
+    private void ensureMillisPrecision(Connection connection, String table, String... columns) throws SQLException {
+        List<String> modifications = new ArrayList<>(columns.length);
+        String sql = "SELECT DATETIME_PRECISION FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ? AND DATA_TYPE = 'datetime'";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (String column : columns) {
+                stmt.setString(1, table);
+                stmt.setString(2, column);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && rs.getInt(1) < 3) {
+                        modifications.add("MODIFY COLUMN " + column + " DATETIME(3)");
+                    }
+                }
+            }
+        }
+        if (modifications.isEmpty()) {
+            return;
+        }
+        plugin.getLogger().info("正在将 " + table + " 的时间列改为毫秒精度...");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " " + String.join(", ", modifications));
+        }
+        plugin.getLogger().info(table + " 的时间列已改为毫秒精度");
+    }
+
+    /**
+     * 将旧版本的 VARCHAR(45) 文本IP列转换为 VARBINARY(16)
+     * 新增二进制列后分批回填，再替换原列并重建索引；中途失败时下次启动从已回填的位置继续
+     */
+    private void migrateBinaryAddresses(Connection connection) throws SQLException {
+        String ipHistoryTable = tablePrefix + "ip_history";
+        String playersTable = tablePrefix + "players";
+
+        if (isTextColumn(connection, ipHistoryTable, "ip")) {
+            plugin.getLogger().info("正在将 " + ipHistoryTable + ".ip 转换为二进制格式...");
+            convertColumn(connection, ipHistoryTable, "id", "ip", true);
+            dedupeConvertedHistory(connection, ipHistoryTable);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE " + ipHistoryTable +
+                        " DROP INDEX unique_player_ip, DROP INDEX idx_ip, DROP COLUMN ip," +
+                        " CHANGE ip_bin ip VARBINARY(16) NOT NULL," +
+                        " ADD INDEX idx_ip (ip), ADD UNIQUE KEY unique_player_ip (player_uuid, ip)");
+            }
+            plugin.getLogger().info(ipHistoryTable + ".ip 转换完成");
+        }
+
+        if (isTextColumn(connection, playersTable, "current_ip")) {
+            convertColumn(connection, playersTable, "uuid", "current_ip", false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE " + playersTable +
+                        " DROP COLUMN current_ip, CHANGE current_ip_bin current_ip VARBINARY(16)");
+            }
+            plugin.getLogger().info(playersTable + ".current_ip 转换完成");
+        }
+    }
+
+    private boolean isTextColumn(Connection connection, String table, String column) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && "varchar".equalsIgnoreCase(rs.getString(1));
+            }
+        }
+    }
+
+    private boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        String sql = "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ? LIMIT 1";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 新增 {column}_bin 列（上次转换中断时已存在则直接使用），并按主键分批把尚未转换的文本IP写入
+     * 无法解析的IP记录日志后按 deleteInvalid 删除整行（IP记录）或清空该列（玩家表）
+     */
+    private void convertColumn(Connection connection, String table, String key, String column, boolean deleteInvalid) throws SQLException {
+        String binColumn = column + "_bin";
+        if (columnExists(connection, table, binColumn)) {
+            plugin.getLogger().info("继续转换 " + table + "." + column);
+        } else {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + binColumn + " VARBINARY(16) NULL");
+            }
+        }
+
+        String selectSql = "SELECT " + key + ", " + column + " FROM " + table +
+                " WHERE " + binColumn + " IS NULL AND " + column + " IS NOT NULL AND " + key + " > ? ORDER BY " + key + " LIMIT 5000";
+        String updateSql = "UPDATE " + table + " SET " + binColumn + " = ? WHERE " + key + " = ?";
+        String invalidSql = deleteInvalid
+                ? "DELETE FROM " + table + " WHERE " + key + " = ?"
+                : "UPDATE " + table + " SET " + column + " = NULL WHERE " + key + " = ?";
+        String lastKey = "";
+        int converted = 0;
+        int invalid = 0;
+
+        try (PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement update = connection.prepareStatement(updateSql);
+             PreparedStatement invalidStmt = connection.prepareStatement(invalidSql)) {
+            while (true) {
+                select.setString(1, lastKey);
+                int batch = 0;
+                int invalidBatch = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastKey = rs.getString(1);
+                        String text = rs.getString(2);
+                        byte[] address = IPAddresses.toBytes(text.trim());
+                        if (address == null) {
+                            plugin.getLogger().warning(table + " 中 " + key + " = " + lastKey + " 的IP无法解析，" +
+                                    (deleteInvalid ? "已删除该记录" : "已清空") + ": " + text);
+                            invalidStmt.setString(1, lastKey);
+                            invalidStmt.addBatch();
+                            invalidBatch++;
+                            continue;
+                        }
+                        update.setBytes(1, address);
+                        update.setString(2, lastKey);
+                        update.addBatch();
+                        batch++;
+                    }
+                }
+                if (batch == 0 && invalidBatch == 0) {
+                    break;
+                }
+                if (batch > 0) {
+                    update.executeBatch();
+                }
+                if (invalidBatch > 0) {
+                    invalidStmt.executeBatch();
+                }
+                converted += batch;
+                invalid += invalidBatch;
+            }
+        }
+        plugin.getLogger().info(table + "." + column + " 已转换 " + converted + " 行" +
+                (invalid > 0 ? "，" + invalid + " 行IP无法解析" : ""));
+    }
+
+    /**
+     * 不同写法的同一地址（如 ::1 与 0:0::1）转换后会相同，重建唯一索引前合并：
+     * 保留最后使用时间最新的一行，首次使用时间取各行中最早的
+     */
+    private void dedupeConvertedHistory(Connection connection, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("UPDATE " + table + " h JOIN (" +
+                    "SELECT player_uuid, ip_bin, MIN(first_seen) AS first_seen FROM " + table +
+                    " GROUP BY player_uuid, ip_bin HAVING COUNT(*) > 1) d " +
+                    "ON h.player_uuid = d.player_uuid AND h.ip_bin = d.ip_bin SET h.first_seen = d.first_seen");
+            int removed = stmt.executeUpdate("DELETE h1 FROM " + table + " h1 JOIN " + table + " h2 " +
+                    "ON h1.player_uuid = h2.player_uuid AND h1.ip_bin = h2.ip_bin " +
+                    "AND (IFNULL(h1.last_seen, '1000-01-01') < IFNULL(h2.last_seen, '1000-01-01') " +
+                    "OR (h1.last_seen <=> h2.last_seen AND h1.id < h2.id))");
+            if (removed > 0) {
+                plugin.getLogger().info(table + " 合并了 " + removed + " 条重复的IP记录");
+            }
+        }
     }
 
     @Override
@@ -216,69 +412,59 @@ public class MySQLStorageHandler implements StorageHandler {
         String playersTable = tablePrefix + "players";
         String ipHistoryTable = tablePrefix + "ip_history";
 
+        List<IPRecord> dirtyRecords = playerData.getDirtyRecords();
+        if (!playerData.isDirty() && dirtyRecords.isEmpty()) {
+            return;
+        }
+
         try {
             // 开始事务
             connection.setAutoCommit(false);
 
-            // 插入或更新玩家基本信息
-            String playerSql = "INSERT INTO " + playersTable + " (uuid, name, current_ip, current_location, current_isp, last_seen) " +
-                    "VALUES (?, ?, ?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE name = VALUES(name), current_ip = VALUES(current_ip), " +
-                    "current_location = VALUES(current_location), current_isp = VALUES(current_isp), last_seen = VALUES(last_seen)";
+            // 插入或更新玩家基本信息（仅在有修改时）
+            if (playerData.isDirty()) {
+                String playerSql = "INSERT INTO " + playersTable + " (uuid, name, current_ip, current_location, current_isp, last_seen) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE name = VALUES(name), current_ip = VALUES(current_ip), " +
+                        "current_location = VALUES(current_location), current_isp = VALUES(current_isp), last_seen = VALUES(last_seen)";
 
-            try (PreparedStatement playerStmt = connection.prepareStatement(playerSql)) {
-                playerStmt.setString(1, playerData.getUuid());
-                playerStmt.setString(2, playerData.getName());
-                playerStmt.setString(3, playerData.getCurrentIP());
-                playerStmt.setString(4, playerData.getCurrentLocation());
-                playerStmt.setString(5, playerData.getCurrentISP());
+                try (PreparedStatement playerStmt = connection.prepareStatement(playerSql)) {
+                    playerStmt.setString(1, playerData.getUuid());
+                    playerStmt.setString(2, playerData.getName());
+                    playerStmt.setBytes(3, playerData.getCurrentAddress());
+                    playerStmt.setString(4, playerData.getCurrentLocation());
+                    playerStmt.setString(5, playerData.getCurrentISP());
 
-                // 正确转换时间戳
-                Timestamp lastSeen = convertToTimestamp(playerData.getLastSeen());
-                playerStmt.setTimestamp(6, lastSeen);
+                    playerStmt.setTimestamp(6, toTimestamp(playerData.getLastSeen()));
 
-                playerStmt.executeUpdate();
+                    playerStmt.executeUpdate();
+                }
             }
 
-            // 保存IP历史记录
-            for (IPRecord record : playerData.getIpHistory()) {
+            // 只保存新增或修改过的IP记录，合并为一次批量写入
+            if (!dirtyRecords.isEmpty()) {
                 String ipSql = "INSERT INTO " + ipHistoryTable + " (player_uuid, ip, location, isp, first_seen, last_seen) " +
                         "VALUES (?, ?, ?, ?, ?, ?) " +
                         "ON DUPLICATE KEY UPDATE location = VALUES(location), isp = VALUES(isp), last_seen = VALUES(last_seen)";
 
                 try (PreparedStatement ipStmt = connection.prepareStatement(ipSql)) {
-                    ipStmt.setString(1, playerData.getUuid());
-                    ipStmt.setString(2, record.getIp());
-                    ipStmt.setString(3, record.getLocation());
-                    ipStmt.setString(4, record.getIsp());
-
-                    // 正确转换时间戳
-                    Timestamp firstSeen = convertToTimestamp(record.getFirstSeen());
-                    Timestamp lastSeen = convertToTimestamp(record.getLastSeen());
-
-                    ipStmt.setTimestamp(5, firstSeen);
-                    ipStmt.setTimestamp(6, lastSeen);
-
-                    ipStmt.executeUpdate();
+                    for (IPRecord record : dirtyRecords) {
+                        ipStmt.setString(1, playerData.getUuid());
+                        ipStmt.setBytes(2, record.getAddress());
+                        ipStmt.setString(3, record.getLocation());
+                        ipStmt.setString(4, record.getIsp());
+
+                        ipStmt.setTimestamp(5, toTimestamp(record.getFirstSeen()));
+                        ipStmt.setTimestamp(6, toTimestamp(record.getLastSeen()));
+                        ipStmt.addBatch();
+                    }
+                    ipStmt.executeBatch();
                 }
             }
 
-            // 限制历史记录数量
-            int maxSize = plugin.getConfig().getInt("data.max-history-size", 100);
-            String deleteOldSql = "DELETE FROM " + ipHistoryTable + " WHERE player_uuid = ? AND id NOT IN (" +
-                    "SELECT id FROM (" +
-                    "SELECT id FROM " + ipHistoryTable + " WHERE player_uuid = ? ORDER BY last_seen DESC LIMIT ?" +
-                    ") AS temp)";
-
-            try (PreparedStatement deleteStmt = connection.prepareStatement(deleteOldSql)) {
-                deleteStmt.setString(1, playerData.getUuid());
-                deleteStmt.setString(2, playerData.getUuid());
-                deleteStmt.setInt(3, maxSize);
-                deleteStmt.executeUpdate();
-            }
-
             // 提交事务
             connection.commit();
+            playerData.markClean();
 
         } catch (SQLException e) {
             try {
@@ -289,8 +475,6 @@ public class MySQLStorageHandler implements StorageHandler {
                 plugin.getLogger().log(Level.SEVERE, "回滚事务失败: " + ex.getMessage(), ex);
             }
             throw new RuntimeException("保存玩家数据失败", e);
-        } catch (ParseException e) {
-            plugin.getLogger().log(Level.SEVERE, "时间戳格式错误: " + e.getMessage(), e);
         } finally {
             try {
                 if (connection != null) {
@@ -302,12 +486,202 @@ public class MySQLStorageHandler implements StorageHandler {
         }
     }
 
+    @Override
+    public void importPlayers(List<PlayerData> players) throws SQLException {
+        String playersTable = tablePrefix + "players";
+        String ipHistoryTable = tablePrefix + "ip_history";
+
+        List<IPRecord> records = new ArrayList<>();
+        List<String> recordOwners = new ArrayList<>();
+        for (PlayerData playerData : players) {
+            for (IPRecord record : playerData.getDirtyRecords()) {
+                records.add(record);
+                recordOwners.add(playerData.getUuid());
+            }
+        }
+
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+            try {
+                // 多行 INSERT，每条语句最多 IMPORT_ROWS_PER_STATEMENT 行，整批在一个事务中提交
+                // 目标可能是正在使用的存储：已有的行只在导入的数据更新时才被覆盖，last_seen 取较大值
+                // MySQL 按从左到右的顺序赋值，last_seen 必须最后更新，前面的比较才使用原来的值
+                for (int from = 0; from < players.size(); from += IMPORT_ROWS_PER_STATEMENT) {
+                    int rows = Math.min(IMPORT_ROWS_PER_STATEMENT, players.size() - from);
+                    String sql = "INSERT INTO " + playersTable + " (uuid, name, current_ip, current_location, current_isp, last_seen) VALUES " +
+                            placeholders(rows, 6) +
+                            " ON DUPLICATE KEY UPDATE name = IF(" + IMPORT_IS_NEWER + ", VALUES(name), name), " +
+                            "current_ip = IF(" + IMPORT_IS_NEWER + ", VALUES(current_ip), current_ip), " +
+                            "current_location = IF(" + IMPORT_IS_NEWER + ", VALUES(current_location), current_location), " +
+                            "current_isp = IF(" + IMPORT_IS_NEWER + ", VALUES(current_isp), current_isp), " +
+                            "last_seen = GREATEST(IFNULL(last_seen, VALUES(last_seen)), VALUES(last_seen))";
+                    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                        int index = 1;
+                        for (PlayerData playerData : players.subList(from, from + rows)) {
+                            stmt.setString(index++, playerData.getUuid());
+                            stmt.setString(index++, playerData.getName());
+                            stmt.setBytes(index++, playerData.getCurrentAddress());
+                            stmt.setString(index++, playerData.getCurrentLocation());
+                            stmt.setString(index++, playerData.getCurrentISP());
+                            stmt.setTimestamp(index++, toTimestamp(playerData.getLastSeen()));
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+
+                for (int from = 0; from < records.size(); from += IMPORT_ROWS_PER_STATEMENT) {
+                    int rows = Math.min(IMPORT_ROWS_PER_STATEMENT, records.size() - from);
+                    String sql = "INSERT INTO " + ipHistoryTable + " (player_uuid, ip, location, isp, first_seen, last_seen) VALUES " +
+                            placeholders(rows, 6) +
+                            " ON DUPLICATE KEY UPDATE location = IF(" + IMPORT_IS_NEWER + ", VALUES(location), location), " +
+                            "isp = IF(" + IMPORT_IS_NEWER + ", VALUES(isp), isp), " +
+                            "first_seen = LEAST(IFNULL(first_seen, VALUES(first_seen)), VALUES(first_seen)), " +
+                            "last_seen = GREATEST(IFNULL(last_seen, VALUES(last_seen)), VALUES(last_seen))";
+                    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                        int index = 1;
+                        for (int i = from; i < from + rows; i++) {
+                            IPRecord record = records.get(i);
+                            stmt.setString(index++, recordOwners.get(i));
+                            stmt.setBytes(index++, record.getAddress());
+                            stmt.setString(index++, record.getLocation());
+                            stmt.setString(index++, record.getIsp());
+                            stmt.setTimestamp(index++, toTimestamp(record.getFirstSeen()));
+                            stmt.setTimestamp(index++, toTimestamp(record.getLastSeen()));
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            returnConnection(connection);
+        }
+
+        for (PlayerData playerData : players) {
+            playerData.markClean();
+        }
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws SQLException {
+        String playersTable = tablePrefix + "players";
+        String ipHistoryTable = tablePrefix + "ip_history";
+        int batchSize = Math.max(1, plugin.getConfig().getInt("migrate.batch-size", 500));
+
+        // 按主键键集分页读取玩家，每页的IP记录用一条 IN 查询取出
+        String playerSql = "SELECT uuid, name, current_ip, current_location, current_isp, last_seen FROM " + playersTable +
+                " WHERE uuid > ? ORDER BY uuid LIMIT ?";
+        String lastUuid = afterUuid != null ? afterUuid : "";
+
+        while (true) {
+            Map<String, PlayerData> page = new LinkedHashMap<>();
+            Connection connection = null;
+            try {
+                connection = getConnection();
+                try (PreparedStatement stmt = connection.prepareStatement(playerSql)) {
+                    stmt.setString(1, lastUuid);
+                    stmt.setInt(2, batchSize);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            PlayerData playerData = new PlayerData(rs.getString("uuid"), rs.getString("name"));
+                            playerData.setCurrentAddress(rs.getBytes("current_ip"));
+                            playerData.setCurrentLocation(rs.getString("current_location"));
+                            playerData.setCurrentISP(rs.getString("current_isp"));
+                            Timestamp lastSeen = rs.getTimestamp("last_seen");
+                            if (lastSeen != null) {
+                                playerData.setLastSeen(lastSeen.getTime());
+                            }
+                            page.put(playerData.getUuid(), playerData);
+                        }
+                    }
+                }
+                if (page.isEmpty()) {
+                    return;
+                }
+
+                String historySql = "SELECT player_uuid, ip, first_seen, last_seen, location, isp FROM " + ipHistoryTable +
+                        " WHERE player_uuid IN " + placeholders(1, page.size()) +
+                        " ORDER BY player_uuid, last_seen DESC, ip DESC";
+                try (PreparedStatement stmt = connection.prepareStatement(historySql)) {
+                    int index = 1;
+                    for (String uuid : page.keySet()) {
+                        stmt.setString(index++, uuid);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            PlayerData playerData = page.get(rs.getString("player_uuid"));
+                            if (playerData == null) {
+                                continue;
+                            }
+                            IPRecord record = new IPRecord(rs.getBytes("ip"),
+                                    toMillis(rs.getTimestamp("first_seen")),
+                                    toMillis(rs.getTimestamp("last_seen")));
+                            record.setLocation(rs.getString("location"));
+                            record.setIsp(rs.getString("isp"));
+                            playerData.getIpHistory().add(record);
+                        }
+                    }
+                }
+            } finally {
+                returnConnection(connection);
+            }
+
+            for (PlayerData playerData : page.values()) {
+                playerData.markClean();
+                if (!consumer.test(playerData)) {
+                    return;
+                }
+                lastUuid = playerData.getUuid();
+            }
+        }
+    }
+
+    /**
+     * 生成多行 VALUES 的占位符，如 rows=2, columns=3 时为 (?, ?, ?), (?, ?, ?)
+     */
+    private static String placeholders(int rows, int columns) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns; i++) {
+            row.append(i > 0 ? ", ?" : "?");
+        }
+        row.append(')');
+
+        StringBuilder sql = new StringBuilder(rows * (row.length() + 2));
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * IP记录保留策略，未初始化时为null
+     */
+    public RetentionEngine getRetentionEngine() {
+        return retentionEngine;
+    }
+
     @Override
     public PlayerData loadPlayerData(UUID uuid) {
+        return loadPlayerData(uuid, 0);
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid, int historyLimit) {
         Connection connection = null;
         try {
             connection = getConnection();
-            return loadPlayerDataInternal(connection, uuid);
+            return loadPlayerDataInternal(connection, "p.uuid = ?", uuid.toString(), historyLimit);
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "从MySQL加载玩家数据失败: " + e.getMessage(), e);
             return null;
@@ -316,51 +690,62 @@ public class MySQLStorageHandler implements StorageHandler {
         }
     }
 
-    private PlayerData loadPlayerDataInternal(Connection connection, UUID uuid) {
+    /**
+     * 一次查询取出玩家信息、最新的 historyLimit 条IP记录（0 表示全部）和IP记录总数
+     * 每行都带有玩家列；没有IP记录时 LEFT JOIN 返回一行，IP列为NULL
+     */
+    private PlayerData loadPlayerDataInternal(Connection connection, String condition, String value, int historyLimit) {
         String playersTable = tablePrefix + "players";
         String ipHistoryTable = tablePrefix + "ip_history";
 
-        try {
-            // 加载玩家基本信息
-            String playerSql = "SELECT * FROM " + playersTable + " WHERE uuid = ?";
-            try (PreparedStatement playerStmt = connection.prepareStatement(playerSql)) {
-                playerStmt.setString(1, uuid.toString());
+        // 玩家信息和记录总数在只有一行的派生表中计算一次（带 LIMIT 的派生表不会被合并到外层），
+        // 再连接历史记录；COUNT 不会随连接出的每一行重复执行
+        String sql = "SELECT p.uuid, p.name, p.current_ip, p.current_location, p.current_isp, p.last_seen, p.history_total, " +
+                "h.ip, h.first_seen, h.last_seen AS ip_last_seen, h.location, h.isp " +
+                "FROM (SELECT p.uuid, p.name, p.current_ip, p.current_location, p.current_isp, p.last_seen, " +
+                "(SELECT COUNT(*) FROM " + ipHistoryTable + " c WHERE c.player_uuid = p.uuid) AS history_total " +
+                "FROM " + playersTable + " p WHERE " + condition + " LIMIT 1) p " +
+                "LEFT JOIN " + ipHistoryTable + " h ON h.player_uuid = p.uuid " +
+                "ORDER BY h.last_seen DESC, h.ip DESC" +
+                (historyLimit > 0 ? " LIMIT ?" : "");
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, value);
+            if (historyLimit > 0) {
+                stmt.setInt(2, historyLimit);
+            }
 
-                try (ResultSet rs = playerStmt.executeQuery()) {
-                    if (rs.next()) {
-                        PlayerData playerData = new PlayerData(uuid.toString(), rs.getString("name"));
-                        playerData.setCurrentIP(rs.getString("current_ip"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                PlayerData playerData = null;
+                while (rs.next()) {
+                    if (playerData == null) {
+                        playerData = new PlayerData(rs.getString("uuid"), rs.getString("name"));
+                        playerData.setCurrentAddress(rs.getBytes("current_ip"));
                         playerData.setCurrentLocation(rs.getString("current_location"));
                         playerData.setCurrentISP(rs.getString("current_isp"));
-
-                        // 正确转换时间戳
                         Timestamp lastSeen = rs.getTimestamp("last_seen");
                         if (lastSeen != null) {
-                            playerData.setLastSeen(dateFormat.format(lastSeen));
-                        }
-
-                        // 加载IP历史记录
-                        String ipSql = "SELECT * FROM " + ipHistoryTable + " WHERE player_uuid = ? ORDER BY last_seen DESC";
-                        try (PreparedStatement ipStmt = connection.prepareStatement(ipSql)) {
-                            ipStmt.setString(1, uuid.toString());
-
-                            try (ResultSet ipRs = ipStmt.executeQuery()) {
-                                while (ipRs.next()) {
-                                    IPRecord record = new IPRecord(
-                                            ipRs.getString("ip"),
-                                            formatTimestamp(ipRs.getTimestamp("first_seen")),
-                                            formatTimestamp(ipRs.getTimestamp("last_seen"))
-                                    );
-                                    record.setLocation(ipRs.getString("location"));
-                                    record.setIsp(ipRs.getString("isp"));
-                                    playerData.addIPRecord(record);
-                                }
-                            }
+                            playerData.setLastSeen(lastSeen.getTime());
                         }
+                        playerData.setHistoryTotal(rs.getInt("history_total"));
+                    }
 
-                        return playerData;
+                    byte[] ip = rs.getBytes("ip");
+                    if (ip != null) {
+                        IPRecord record = new IPRecord(ip,
+                                toMillis(rs.getTimestamp("first_seen")),
+                                toMillis(rs.getTimestamp("ip_last_seen")));
+                        record.setLocation(rs.getString("location"));
+                        record.setIsp(rs.getString("isp"));
+                        // 结果按最后使用时间倒序，直接追加即保持最新在前
+                        playerData.getIpHistory().add(record);
                     }
                 }
+
+                if (playerData != null) {
+                    playerData.markClean();
+                }
+                return playerData;
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "从MySQL加载玩家数据失败: " + e.getMessage(), e);
@@ -371,10 +756,63 @@ public class MySQLStorageHandler implements StorageHandler {
 
     @Override
     public PlayerData findPlayerDataByName(String playerName) {
+        return findPlayerDataByName(playerName, 0);
+    }
+
+    @Override
+    public List<IPRecord> getIPHistoryPage(UUID uuid, HistoryCursor after, int limit) {
+        String ipHistoryTable = tablePrefix + "ip_history";
+        // 键集分页：从游标处继续，利用 (player_uuid, last_seen) 索引，不需要 OFFSET 扫描前面的行
+        String sql = "SELECT ip, first_seen, last_seen, location, isp FROM " + ipHistoryTable +
+                " WHERE player_uuid = ?" +
+                (after != null ? " AND (last_seen < ? OR (last_seen = ? AND ip < ?))" : "") +
+                " ORDER BY last_seen DESC, ip DESC LIMIT ?";
+
+        List<IPRecord> records = new ArrayList<>(limit);
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int index = 1;
+                stmt.setString(index++, uuid.toString());
+                if (after != null) {
+                    Timestamp lastSeen = toTimestamp(after.getLastSeen());
+                    stmt.setTimestamp(index++, lastSeen);
+                    stmt.setTimestamp(index++, lastSeen);
+                    stmt.setBytes(index++, after.getAddress());
+                }
+                stmt.setInt(index, limit);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        IPRecord record = new IPRecord(rs.getBytes("ip"),
+                                toMillis(rs.getTimestamp("first_seen")),
+                                toMillis(rs.getTimestamp("last_seen")));
+                        record.setLocation(rs.getString("location"));
+                        record.setIsp(rs.getString("isp"));
+                        record.markClean();
+                        records.add(record);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "分页读取IP记录失败: " + e.getMessage(), e);
+        } finally {
+            returnConnection(connection);
+        }
+        return records;
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        String playersTable = tablePrefix + "players";
         Connection connection = null;
         try {
             connection = getConnection();
-            return findPlayerDataByNameInternal(connection, playerName);
+            // 同名的旧账号取最近上线的一个，UUID在同一条语句的子查询中解析
+            return loadPlayerDataInternal(connection,
+                    "p.uuid = (SELECT uuid FROM " + playersTable + " WHERE name = ? ORDER BY last_seen DESC LIMIT 1)",
+                    playerName, historyLimit);
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "按名称查找玩家数据失败: " + e.getMessage(), e);
             return null;
@@ -383,24 +821,33 @@ public class MySQLStorageHandler implements StorageHandler {
         }
     }
 
-    private PlayerData findPlayerDataByNameInternal(Connection connection, String playerName) {
-        String playersTable = tablePrefix + "players";
+    @Override
+    public HistoryCursor findHistoryCursor(UUID uuid, int skip) {
+        if (skip < 1) {
+            return null;
+        }
+        String ipHistoryTable = tablePrefix + "ip_history";
+        // 只在 (player_uuid, last_seen) 索引上跳过前面的行，不读取和反序列化它们
+        String sql = "SELECT last_seen, ip FROM " + ipHistoryTable +
+                " WHERE player_uuid = ? ORDER BY last_seen DESC, ip DESC LIMIT 1 OFFSET ?";
 
+        Connection connection = null;
         try {
-            String sql = "SELECT uuid FROM " + playersTable + " WHERE name = ?";
+            connection = getConnection();
             try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, playerName);
-
+                stmt.setString(1, uuid.toString());
+                stmt.setInt(2, skip - 1);
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        return loadPlayerDataInternal(connection, UUID.fromString(rs.getString("uuid")));
+                        return new HistoryCursor(toMillis(rs.getTimestamp("last_seen")), rs.getBytes("ip"));
                     }
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "按名称查找玩家数据失败: " + e.getMessage(), e);
+            plugin.getLogger().log(Level.SEVERE, "查找分页游标失败: " + e.getMessage(), e);
+        } finally {
+            returnConnection(connection);
         }
-
         return null;
     }
 
@@ -429,9 +876,9 @@ public class MySQLStorageHandler implements StorageHandler {
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
                         IPRecord record = new IPRecord(
-                                rs.getString("ip"),
-                                formatTimestamp(rs.getTimestamp("first_seen")),
-                                formatTimestamp(rs.getTimestamp("last_seen"))
+                                rs.getBytes("ip"),
+                                toMillis(rs.getTimestamp("first_seen")),
+                                toMillis(rs.getTimestamp("last_seen"))
                         );
                         record.setLocation(rs.getString("location"));
                         record.setIsp(rs.getString("isp"));
@@ -467,7 +914,7 @@ public class MySQLStorageHandler implements StorageHandler {
             String sql = "SELECT COUNT(*) FROM " + ipHistoryTable + " WHERE player_uuid = ? AND ip = ?";
             try (PreparedStatement stmt = connection.prepareStatement(sql)) {
                 stmt.setString(1, uuid.toString());
-                stmt.setString(2, ip);
+                stmt.setBytes(2, IPAddresses.toBytes(ip));
 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
@@ -482,23 +929,61 @@ public class MySQLStorageHandler implements StorageHandler {
         return false;
     }
 
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        Map<UUID, String> accounts = new LinkedHashMap<>();
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            findAccountsByIPInternal(connection, ip, subnet, accounts);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "按IP查找玩家失败: " + e.getMessage(), e);
+        } finally {
+            returnConnection(connection);
+        }
+        return accounts;
+    }
+
+    private void findAccountsByIPInternal(Connection connection, String ip, boolean subnet, Map<UUID, String> accounts) throws SQLException {
+        String playersTable = tablePrefix + "players";
+        String ipHistoryTable = tablePrefix + "ip_history";
+
+        byte[] address = IPAddresses.toBytes(ip);
+        if (address == null) {
+            return;
+        }
+
+        // 网段在二进制列上是连续区间，范围查询同样可以利用 idx_ip 索引
+        String match = subnet ? "h.ip BETWEEN ? AND ?" : "h.ip = ?";
+        String sql = "SELECT DISTINCT h.player_uuid, p.name FROM " + ipHistoryTable + " h " +
+                "LEFT JOIN " + playersTable + " p ON p.uuid = h.player_uuid WHERE " + match;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            if (subnet) {
+                byte[][] range = IPAddresses.subnetRange(address);
+                stmt.setBytes(1, range[0]);
+                stmt.setBytes(2, range[1]);
+            } else {
+                stmt.setBytes(1, address);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.put(UUID.fromString(rs.getString(1)), rs.getString(2));
+                }
+            }
+        }
+    }
+
     /**
-     * 将字符串时间戳转换为java.sql.Timestamp
+     * 毫秒时间戳转换为java.sql.Timestamp，未知时间使用当前时间
      */
-    private Timestamp convertToTimestamp(String dateString) throws ParseException {
-        if (dateString == null) {
-            return new Timestamp(System.currentTimeMillis());
-        }
-        return new Timestamp(dateFormat.parse(dateString).getTime());
+    private static Timestamp toTimestamp(long millis) {
+        return new Timestamp(millis > 0 ? millis : TimeService.currentTimeMillis());
     }
 
     /**
-     * 将java.sql.Timestamp转换为字符串时间戳
+     * java.sql.Timestamp转换为毫秒时间戳
      */
-    private String formatTimestamp(Timestamp timestamp) {
-        if (timestamp == null) {
-            return dateFormat.format(new java.util.Date());
-        }
-        return dateFormat.format(new java.util.Date(timestamp.getTime()));
+    private static long toMillis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : TimeService.currentTimeMillis();
     }
 }
\ No newline at end of file
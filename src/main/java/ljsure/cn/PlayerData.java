@@ -10,12 +10,18 @@ import java.util.stream.Collectors;
 public class PlayerData implements ConfigurationSerializable {
     private String uuid;
     private String name;
-    private String currentIP;
+    // 16字节地址，IPv4 使用 IPv4-mapped 形式
+    private byte[] currentAddress;
     private String currentLocation;
     private String currentISP;
-    private String lastSeen;
+    private long lastSeen;
     private List<IPRecord> ipHistory;
 
+    // 玩家基本信息自上次保存后是否被修改（不参与序列化）
+    private transient boolean dirty = true;
+    // 存储中的IP记录总数，只加载了部分记录时大于 ipHistory 的大小；-1 表示已全部加载
+    private transient int historyTotal = -1;
+
     public PlayerData(String uuid, String name) {
         this.uuid = uuid;
         this.name = name;
@@ -25,43 +31,96 @@ public class PlayerData implements ConfigurationSerializable {
     // Getters and Setters
     public String getUuid() { return uuid; }
     public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
+    public void setName(String name) { dirty |= !Objects.equals(this.name, name); this.name = name; }
+
+    public byte[] getCurrentAddress() { return currentAddress; }
+    public void setCurrentAddress(byte[] currentAddress) { dirty |= !Arrays.equals(this.currentAddress, currentAddress); this.currentAddress = currentAddress; }
 
-    public String getCurrentIP() { return currentIP; }
-    public void setCurrentIP(String currentIP) { this.currentIP = currentIP; }
+    // 显示用的当前IP文本
+    public String getCurrentIP() { return IPAddresses.format(currentAddress); }
 
     public String getCurrentLocation() { return currentLocation; }
-    public void setCurrentLocation(String currentLocation) { this.currentLocation = currentLocation; }
+    public void setCurrentLocation(String currentLocation) { dirty |= !Objects.equals(this.currentLocation, currentLocation); this.currentLocation = currentLocation; }
 
     public String getCurrentISP() { return currentISP; }
-    public void setCurrentISP(String currentISP) { this.currentISP = currentISP; }
+    public void setCurrentISP(String currentISP) { dirty |= !Objects.equals(this.currentISP, currentISP); this.currentISP = currentISP; }
 
-    public String getLastSeen() { return lastSeen; }
-    public void setLastSeen(String lastSeen) { this.lastSeen = lastSeen; }
+    public long getLastSeen() { return lastSeen; }
+    public void setLastSeen(long lastSeen) { dirty |= this.lastSeen != lastSeen; this.lastSeen = lastSeen; }
 
     public List<IPRecord> getIpHistory() { return ipHistory; }
 
+    // IP记录总数（包括未加载的部分）
+    public int getHistoryTotal() { return Math.max(historyTotal, ipHistory.size()); }
+    public void setHistoryTotal(int historyTotal) { this.historyTotal = historyTotal; }
+
     // 添加IP记录
     public void addIPRecord(IPRecord record) {
         ipHistory.add(0, record); // 添加到开头
     }
 
+    // 脏标记：玩家基本信息是否需要写回
+    public boolean isDirty() { return dirty; }
+
+    // 获取自上次保存后新增或修改过的IP记录
+    public List<IPRecord> getDirtyRecords() {
+        List<IPRecord> dirtyRecords = new ArrayList<>();
+        for (IPRecord record : ipHistory) {
+            if (record.isDirty()) {
+                dirtyRecords.add(record);
+            }
+        }
+        return dirtyRecords;
+    }
+
+    // 保存成功后清除玩家及所有IP记录的脏标记
+    public void markClean() {
+        dirty = false;
+        for (IPRecord record : ipHistory) {
+            record.markClean();
+        }
+    }
+
+    // 标记玩家及所有IP记录为待写入（迁移到其他存储时整体写入）
+    public void markDirty() {
+        dirty = true;
+        for (IPRecord record : ipHistory) {
+            record.markDirty();
+        }
+    }
+
     // 查找已有的IP记录
-    public IPRecord findExistingRecord(String ip) {
+    public IPRecord findExistingRecord(byte[] address) {
         for (IPRecord record : ipHistory) {
-            if (ip.equals(record.getIp())) {
+            if (record.matches(address)) {
                 return record;
             }
         }
         return null;
     }
 
+    // 深拷贝，包括IP记录和脏标记
+    public PlayerData copy() {
+        PlayerData copy = new PlayerData(uuid, name);
+        copy.currentAddress = currentAddress;
+        copy.currentLocation = currentLocation;
+        copy.currentISP = currentISP;
+        copy.lastSeen = lastSeen;
+        copy.ipHistory = new ArrayList<>(ipHistory.size());
+        for (IPRecord record : ipHistory) {
+            copy.ipHistory.add(record.copy());
+        }
+        copy.dirty = dirty;
+        copy.historyTotal = historyTotal;
+        return copy;
+    }
+
     // ConfigurationSerializable 实现
     @Override
     public Map<String, Object> serialize() {
         Map<String, Object> map = new HashMap<>();
         map.put("name", name);
-        map.put("currentIP", currentIP);
+        map.put("currentIP", getCurrentIP());
         map.put("currentLocation", currentLocation);
         map.put("currentISP", currentISP);
         map.put("lastSeen", lastSeen);
@@ -81,19 +140,21 @@ public class PlayerData implements ConfigurationSerializable {
         String name = (String) map.get("name");
         PlayerData data = new PlayerData(uuid, name);
 
-        data.setCurrentIP((String) map.get("currentIP"));
+        data.setCurrentAddress(IPAddresses.toBytes((String) map.get("currentIP")));
         data.setCurrentLocation((String) map.get("currentLocation"));
         data.setCurrentISP((String) map.get("currentISP"));
-        data.setLastSeen((String) map.get("lastSeen"));
+        data.setLastSeen(TimeService.toMillis(map.get("lastSeen")));
 
         // 加载IP历史记录
         List<Map<String, Object>> historyList = (List<Map<String, Object>>) map.get("ipHistory");
         if (historyList != null) {
+            // 按保存时的顺序（最新在前）追加
             for (Map<String, Object> recordMap : historyList) {
-                data.addIPRecord(IPRecord.deserialize(recordMap));
+                data.getIpHistory().add(IPRecord.deserialize(recordMap));
             }
         }
 
+        data.markClean();
         return data;
     }
 
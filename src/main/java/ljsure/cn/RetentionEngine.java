@@ -0,0 +1,182 @@
+package ljsure.cn;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * MySQL IP记录的保留策略，后台定时执行
+ * 按时间：删除最后使用时间早于 max-age-days 的IP记录，以及之后已没有任何IP记录的过期玩家；
+ * 按数量：删除每名玩家超出 data.max-history-size 的旧记录
+ * 按时间的删除每次最多 chunk-size 行并各自提交，块之间短暂停顿，不会长时间锁表
+ */
+public class RetentionEngine {
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    private final JavaPlugin plugin;
+    private final IPLogExecutors executors;
+    private final DataSource dataSource;
+    private final String playersTable;
+    private final String ipHistoryTable;
+
+    private final long intervalMinutes;
+    private final int maxAgeDays;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+
+    private ScheduledFuture<?> task;
+    private volatile boolean stopped;
+
+    private final AtomicLong deletedRecords = new AtomicLong();
+    private final AtomicLong deletedPlayers = new AtomicLong();
+    private volatile long lastRunMillis;
+
+    public RetentionEngine(JavaPlugin plugin, IPLogExecutors executors, DataSource dataSource, String tablePrefix) {
+        this.plugin = plugin;
+        this.executors = executors;
+        this.dataSource = dataSource;
+        this.playersTable = tablePrefix + "players";
+        this.ipHistoryTable = tablePrefix + "ip_history";
+
+        String path = "storage.mysql.retention.";
+        // 兼容旧版本的 trim-interval-minutes
+        this.intervalMinutes = plugin.getConfig().getLong(path + "interval-minutes",
+                plugin.getConfig().getLong("storage.mysql.trim-interval-minutes", 30));
+        this.maxAgeDays = Math.max(0, plugin.getConfig().getInt(path + "max-age-days", 0));
+        this.chunkSize = Math.max(1, plugin.getConfig().getInt(path + "chunk-size", 1000));
+        this.chunkPauseMillis = Math.max(0, plugin.getConfig().getLong(path + "chunk-pause-ms", 50));
+    }
+
+    public void start() {
+        if (intervalMinutes > 0) {
+            task = executors.scheduleAtFixedRate(executors.storage(), "清理过期IP记录", this::run, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * 停止定时任务，正在进行的删除在当前块结束后退出
+     */
+    public void stop() {
+        stopped = true;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * 执行一次完整的清理
+     */
+    public void run() {
+        long start = System.currentTimeMillis();
+        try {
+            int records = 0;
+            int players = 0;
+            if (maxAgeDays > 0) {
+                Timestamp cutoff = new Timestamp(TimeService.currentTimeMillis() - maxAgeDays * DAY_MILLIS);
+                records += deleteInChunks("DELETE FROM " + ipHistoryTable + " WHERE last_seen < ? LIMIT ?", cutoff);
+                players += deleteInChunks("DELETE FROM " + playersTable + " WHERE last_seen < ? AND NOT EXISTS (" +
+                        "SELECT 1 FROM " + ipHistoryTable + " h WHERE h.player_uuid = " + playersTable + ".uuid) LIMIT ?", cutoff);
+            }
+            records += trimHistory();
+
+            deletedRecords.addAndGet(records);
+            deletedPlayers.addAndGet(players);
+            lastRunMillis = TimeService.currentTimeMillis();
+            if (records > 0 || players > 0) {
+                plugin.getLogger().info("IP记录保留策略已执行: 删除 " + records + " 条IP记录、" + players +
+                        " 名过期玩家，耗时 " + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "执行IP记录保留策略失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 反复执行带 LIMIT 的删除直到没有匹配的行，每块单独提交（自动提交模式）
+     */
+    private int deleteInChunks(String sql, Timestamp cutoff) throws SQLException {
+        int total = 0;
+        while (!stopped) {
+            int deleted;
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setTimestamp(1, cutoff);
+                stmt.setInt(2, chunkSize);
+                deleted = stmt.executeUpdate();
+            }
+            total += deleted;
+            if (deleted < chunkSize) {
+                break;
+            }
+            // 块之间让出锁和连接，避免影响正常的读写
+            if (chunkPauseMillis > 0) {
+                try {
+                    Thread.sleep(chunkPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 清理超出 data.max-history-size 的旧IP记录，只处理超限的玩家
+     */
+    private int trimHistory() throws SQLException {
+        int maxSize = plugin.getConfig().getInt("data.max-history-size", 100);
+
+        try (Connection connection = dataSource.getConnection()) {
+            List<String> overLimit = new ArrayList<>();
+            String findSql = "SELECT player_uuid FROM " + ipHistoryTable + " GROUP BY player_uuid HAVING COUNT(*) > ?";
+            try (PreparedStatement findStmt = connection.prepareStatement(findSql)) {
+                findStmt.setInt(1, maxSize);
+                try (ResultSet rs = findStmt.executeQuery()) {
+                    while (rs.next()) {
+                        overLimit.add(rs.getString(1));
+                    }
+                }
+            }
+
+            if (overLimit.isEmpty()) {
+                return 0;
+            }
+
+            String deleteOldSql = "DELETE FROM " + ipHistoryTable + " WHERE player_uuid = ? AND id NOT IN (" +
+                    "SELECT id FROM (" +
+                    "SELECT id FROM " + ipHistoryTable + " WHERE player_uuid = ? ORDER BY last_seen DESC LIMIT ?" +
+                    ") AS temp)";
+
+            int deleted = 0;
+            try (PreparedStatement deleteStmt = connection.prepareStatement(deleteOldSql)) {
+                for (String uuid : overLimit) {
+                    if (stopped) {
+                        break;
+                    }
+                    deleteStmt.setString(1, uuid);
+                    deleteStmt.setString(2, uuid);
+                    deleteStmt.setInt(3, maxSize);
+                    deleted += deleteStmt.executeUpdate();
+                }
+            }
+            return deleted;
+        }
+    }
+
+    public int getMaxAgeDays() { return maxAgeDays; }
+    public long getDeletedRecords() { return deletedRecords.get(); }
+    public long getDeletedPlayers() { return deletedPlayers.get(); }
+    public long getLastRunMillis() { return lastRunMillis; }
+}
@@ -0,0 +1,671 @@
+package ljsure.cn;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * 嵌入式SQLite存储，适合单服部署：不需要单独的数据库服务，同时有索引的按名称/IP查询和增量写入
+ * 表结构与 MySQLStorageHandler 相同（时间列保存为毫秒时间戳）
+ * 使用WAL日志模式：一个写连接串行执行所有写入，多个只读连接并发读取，读写互不阻塞
+ * 每个连接缓存自己的预编译语句，重复执行时不再解析SQL
+ */
+public class SQLiteStorageHandler implements StorageHandler {
+    private final JavaPlugin plugin;
+    private final IPLogExecutors executors;
+    private final String tablePrefix;
+    private final String playersTable;
+    private final String ipHistoryTable;
+    private File databaseFile;
+    private int maxHistorySize;
+
+    // 写连接只能在持有自身锁时使用
+    private CachedConnection writer;
+    private BlockingQueue<CachedConnection> readers;
+    private final List<CachedConnection> allReaders = new ArrayList<>();
+
+    private ScheduledFuture<?> trimTask;
+    private volatile boolean closed;
+
+    public SQLiteStorageHandler(JavaPlugin plugin, IPLogExecutors executors) {
+        this.plugin = plugin;
+        this.executors = executors;
+        this.tablePrefix = plugin.getConfig().getString("storage.sqlite.table-prefix", "iplog_");
+        this.playersTable = tablePrefix + "players";
+        this.ipHistoryTable = tablePrefix + "ip_history";
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        databaseFile = new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.sqlite.file", "data.db"));
+        File parent = databaseFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("无法创建数据库目录: " + parent.getPath());
+        }
+        maxHistorySize = Math.max(1, plugin.getConfig().getInt("data.max-history-size", 100));
+        int readConnections = Math.max(1, plugin.getConfig().getInt("storage.sqlite.read-connections", 4));
+
+        // 服务端自带SQLite驱动
+        Class.forName("org.sqlite.JDBC");
+
+        writer = open(false);
+        createTables(writer.connection);
+        writer.connection.setAutoCommit(false);
+
+        readers = new ArrayBlockingQueue<>(readConnections);
+        for (int i = 0; i < readConnections; i++) {
+            CachedConnection reader = open(true);
+            allReaders.add(reader);
+            readers.add(reader);
+        }
+
+        // 超出 max-history-size 的旧记录由后台定时删除，不占用保存路径
+        long trimIntervalMinutes = plugin.getConfig().getLong("storage.sqlite.trim-interval-minutes", 30);
+        if (trimIntervalMinutes > 0) {
+            trimTask = executors.scheduleAtFixedRate(executors.storage(), "清理超出上限的SQLite IP记录",
+                    this::trimHistory, trimIntervalMinutes, TimeUnit.MINUTES);
+        }
+        plugin.getLogger().info("SQLite存储系统已初始化: " + databaseFile.getName() + "，只读连接 " + readConnections + " 个");
+    }
+
+    @Override
+    public void shutdown() {
+        if (trimTask != null) {
+            trimTask.cancel(false);
+        }
+        if (writer != null) {
+            synchronized (writer) {
+                closed = true;
+                // 把WAL中的内容写回主文件，关闭后只留下一个数据库文件
+                try (Statement stmt = writer.connection.createStatement()) {
+                    stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                } catch (SQLException e) {
+                    plugin.getLogger().log(Level.WARNING, "SQLite检查点失败: " + e.getMessage(), e);
+                }
+                writer.close();
+            }
+        }
+        for (CachedConnection reader : allReaders) {
+            reader.close();
+        }
+        allReaders.clear();
+        plugin.getLogger().info("SQLite存储系统已关闭");
+    }
+
+    private CachedConnection open(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + plugin.getConfig().getInt("storage.sqlite.busy-timeout-ms", 5000));
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = 1");
+            } else {
+                // 日志模式保存在数据库文件中，由写连接设置一次即可
+                stmt.execute("PRAGMA journal_mode = WAL");
+                // WAL模式下 NORMAL 只在检查点时刷盘，断电最多丢失最后几次提交，不会损坏数据库
+                stmt.execute("PRAGMA synchronous = " + (plugin.getConfig().getBoolean("storage.sqlite.fsync", false) ? "FULL" : "NORMAL"));
+            }
+        }
+        return new CachedConnection(connection);
+    }
+
+    private void createTables(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // 玩家名按不区分大小写比较，与MySQL默认排序规则一致
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + playersTable + " (" +
+                    "uuid VARCHAR(36) PRIMARY KEY, " +
+                    "name VARCHAR(16) NOT NULL COLLATE NOCASE, " +
+                    "current_ip BLOB, " +
+                    "current_location VARCHAR(100), " +
+                    "current_isp VARCHAR(100), " +
+                    "last_seen INTEGER, " +
+                    "created_at INTEGER, " +
+                    "updated_at INTEGER" +
+                    ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_name ON " + playersTable + " (name)");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + ipHistoryTable + " (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "player_uuid VARCHAR(36) NOT NULL, " +
+                    "ip BLOB NOT NULL, " +
+                    "location VARCHAR(100), " +
+                    "isp VARCHAR(100), " +
+                    "first_seen INTEGER, " +
+                    "last_seen INTEGER, " +
+                    "UNIQUE (player_uuid, ip)" +
+                    ")");
+            // 唯一约束自带的索引以 player_uuid 开头，同时承担 idx_player_uuid 的作用
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_ip ON " + ipHistoryTable + " (ip)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_last_seen ON " + ipHistoryTable + " (last_seen)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tablePrefix + "idx_player_last_seen ON " + ipHistoryTable + " (player_uuid, last_seen)");
+        }
+    }
+
+    private CachedConnection borrowReader() throws SQLException {
+        try {
+            return readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待SQLite连接时被中断", e);
+        }
+    }
+
+    private void returnReader(CachedConnection reader) {
+        if (reader != null) {
+            readers.add(reader);
+        }
+    }
+
+    @Override
+    public void savePlayerData(PlayerData playerData) {
+        List<IPRecord> dirtyRecords = playerData.getDirtyRecords();
+        if (!playerData.isDirty() && dirtyRecords.isEmpty()) {
+            return;
+        }
+
+        synchronized (writer) {
+            try {
+                writePlayer(playerData, dirtyRecords, false);
+                writer.connection.commit();
+                playerData.markClean();
+            } catch (SQLException e) {
+                rollback();
+                plugin.getLogger().log(Level.SEVERE, "保存玩家数据到SQLite失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 写入一名玩家的变更，调用方必须持有写连接的锁并负责提交
+     * keepNewer 为true时（迁移导入）已有的行只在写入的数据更新时才被覆盖，last_seen 取较大值
+     */
+    private void writePlayer(PlayerData playerData, List<IPRecord> dirtyRecords, boolean keepNewer) throws SQLException {
+        long now = TimeService.currentTimeMillis();
+        if (playerData.isDirty()) {
+            PreparedStatement stmt = writer.prepare("INSERT INTO " + playersTable +
+                    " (uuid, name, current_ip, current_location, current_isp, last_seen, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT(uuid) DO UPDATE SET name = excluded.name, current_ip = excluded.current_ip, " +
+                    "current_location = excluded.current_location, current_isp = excluded.current_isp, " +
+                    "last_seen = excluded.last_seen, updated_at = excluded.updated_at" +
+                    (keepNewer ? " WHERE excluded.last_seen >= IFNULL(" + playersTable + ".last_seen, 0)" : ""));
+            stmt.setString(1, playerData.getUuid());
+            stmt.setString(2, playerData.getName());
+            stmt.setBytes(3, playerData.getCurrentAddress());
+            stmt.setString(4, playerData.getCurrentLocation());
+            stmt.setString(5, playerData.getCurrentISP());
+            stmt.setLong(6, toMillis(playerData.getLastSeen()));
+            stmt.setLong(7, now);
+            stmt.setLong(8, now);
+            stmt.executeUpdate();
+        }
+
+        if (dirtyRecords.isEmpty()) {
+            return;
+        }
+        // SQLite 中 SET 的所有表达式都使用更新前的值，赋值顺序无关
+        PreparedStatement stmt = writer.prepare("INSERT INTO " + ipHistoryTable +
+                " (player_uuid, ip, location, isp, first_seen, last_seen) VALUES (?, ?, ?, ?, ?, ?) " +
+                (keepNewer
+                        ? "ON CONFLICT(player_uuid, ip) DO UPDATE SET " +
+                        "location = CASE WHEN excluded.last_seen >= IFNULL(last_seen, 0) THEN excluded.location ELSE location END, " +
+                        "isp = CASE WHEN excluded.last_seen >= IFNULL(last_seen, 0) THEN excluded.isp ELSE isp END, " +
+                        "first_seen = MIN(IFNULL(first_seen, excluded.first_seen), excluded.first_seen), " +
+                        "last_seen = MAX(IFNULL(last_seen, 0), excluded.last_seen)"
+                        : "ON CONFLICT(player_uuid, ip) DO UPDATE SET location = excluded.location, isp = excluded.isp, " +
+                        "last_seen = excluded.last_seen"));
+        for (IPRecord record : dirtyRecords) {
+            stmt.setString(1, playerData.getUuid());
+            stmt.setBytes(2, record.getAddress());
+            stmt.setString(3, record.getLocation());
+            stmt.setString(4, record.getIsp());
+            stmt.setLong(5, toMillis(record.getFirstSeen()));
+            stmt.setLong(6, toMillis(record.getLastSeen()));
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+    }
+
+    /**
+     * 删除一名玩家超出 max-history-size 的旧IP记录，调用方必须持有写连接的锁并负责提交
+     */
+    private int trimPlayer(String uuid) throws SQLException {
+        PreparedStatement trim = writer.prepare("DELETE FROM " + ipHistoryTable + " WHERE player_uuid = ? AND id NOT IN (" +
+                "SELECT id FROM " + ipHistoryTable + " WHERE player_uuid = ? ORDER BY last_seen DESC, ip DESC LIMIT ?)");
+        trim.setString(1, uuid);
+        trim.setString(2, uuid);
+        trim.setInt(3, maxHistorySize);
+        return trim.executeUpdate();
+    }
+
+    /**
+     * 定时清理超出 max-history-size 的旧IP记录，只处理超限的玩家
+     * 超限玩家用只读连接查找，每名玩家的删除单独提交，不长时间占用写连接
+     */
+    private void trimHistory() {
+        long start = System.currentTimeMillis();
+        List<String> overLimit = new ArrayList<>();
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement find = reader.prepare("SELECT player_uuid FROM " + ipHistoryTable +
+                    " GROUP BY player_uuid HAVING COUNT(*) > ?");
+            find.setInt(1, maxHistorySize);
+            try (ResultSet rs = find.executeQuery()) {
+                while (rs.next()) {
+                    overLimit.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "查找超出上限的SQLite IP记录失败: " + e.getMessage(), e);
+            return;
+        } finally {
+            returnReader(reader);
+        }
+
+        int deleted = 0;
+        for (String uuid : overLimit) {
+            synchronized (writer) {
+                if (closed) {
+                    break;
+                }
+                try {
+                    deleted += trimPlayer(uuid);
+                    writer.connection.commit();
+                } catch (SQLException e) {
+                    rollback();
+                    plugin.getLogger().log(Level.WARNING, "清理SQLite IP记录失败: " + e.getMessage(), e);
+                    break;
+                }
+            }
+        }
+        if (deleted > 0) {
+            plugin.getLogger().info("已删除 " + deleted + " 条超出上限的SQLite IP记录，涉及 " + overLimit.size() +
+                    " 名玩家，耗时 " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * 导入后立即清理导入玩家中超限的记录，调用方必须持有写连接的锁并负责提交
+     */
+    private void trimImported(List<PlayerData> players) throws SQLException {
+        PreparedStatement count = writer.prepare("SELECT COUNT(*) FROM " + ipHistoryTable + " WHERE player_uuid = ?");
+        for (PlayerData playerData : players) {
+            count.setString(1, playerData.getUuid());
+            try (ResultSet rs = count.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > maxHistorySize) {
+                    trimPlayer(playerData.getUuid());
+                }
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            writer.connection.rollback();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "回滚事务失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void importPlayers(List<PlayerData> players) throws SQLException {
+        // SQLite在同一事务中逐行执行预编译语句已经足够快，不需要拼接多行 INSERT
+        synchronized (writer) {
+            try {
+                for (PlayerData playerData : players) {
+                    writePlayer(playerData, playerData.getDirtyRecords(), true);
+                }
+                writer.connection.commit();
+            } catch (SQLException e) {
+                rollback();
+                throw e;
+            }
+            // 导入的数据已经提交，清理失败只影响记录条数，留给定时任务处理
+            try {
+                trimImported(players);
+                writer.connection.commit();
+            } catch (SQLException e) {
+                rollback();
+                plugin.getLogger().log(Level.WARNING, "清理导入的SQLite IP记录失败: " + e.getMessage(), e);
+            }
+        }
+        for (PlayerData playerData : players) {
+            playerData.markClean();
+        }
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws SQLException {
+        int batchSize = Math.max(1, plugin.getConfig().getInt("migrate.batch-size", 500));
+        String lastUuid = afterUuid != null ? afterUuid : "";
+
+        while (true) {
+            Map<String, PlayerData> page = new LinkedHashMap<>();
+            CachedConnection reader = borrowReader();
+            try {
+                PreparedStatement stmt = reader.prepare("SELECT uuid, name, current_ip, current_location, current_isp, last_seen FROM " +
+                        playersTable + " WHERE uuid > ? ORDER BY uuid LIMIT ?");
+                stmt.setString(1, lastUuid);
+                stmt.setInt(2, batchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        PlayerData playerData = readPlayer(rs);
+                        page.put(playerData.getUuid(), playerData);
+                    }
+                }
+                if (page.isEmpty()) {
+                    return;
+                }
+
+                // 页大小不固定，这条语句不缓存
+                StringBuilder in = new StringBuilder("(");
+                for (int i = 0; i < page.size(); i++) {
+                    in.append(i > 0 ? ", ?" : "?");
+                }
+                in.append(')');
+                try (PreparedStatement history = reader.connection.prepareStatement(
+                        "SELECT player_uuid, ip, first_seen, last_seen, location, isp FROM " + ipHistoryTable +
+                                " WHERE player_uuid IN " + in + " ORDER BY player_uuid, last_seen DESC, ip DESC")) {
+                    int index = 1;
+                    for (String uuid : page.keySet()) {
+                        history.setString(index++, uuid);
+                    }
+                    try (ResultSet rs = history.executeQuery()) {
+                        while (rs.next()) {
+                            PlayerData playerData = page.get(rs.getString("player_uuid"));
+                            if (playerData != null) {
+                                playerData.getIpHistory().add(readRecord(rs, "last_seen"));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                returnReader(reader);
+            }
+
+            for (PlayerData playerData : page.values()) {
+                playerData.markClean();
+                if (!consumer.test(playerData)) {
+                    return;
+                }
+                lastUuid = playerData.getUuid();
+            }
+        }
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid) {
+        return loadPlayerData(uuid, 0);
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid, int historyLimit) {
+        return loadPlayer("p.uuid = ?", uuid.toString(), historyLimit);
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName) {
+        return findPlayerDataByName(playerName, 0);
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        // 同名的旧账号取最近上线的一个
+        return loadPlayer("p.uuid = (SELECT uuid FROM " + playersTable + " WHERE name = ? ORDER BY last_seen DESC LIMIT 1)",
+                playerName, historyLimit);
+    }
+
+    /**
+     * 一次查询取出玩家信息、最新的 historyLimit 条IP记录（0 表示全部）和IP记录总数
+     */
+    private PlayerData loadPlayer(String condition, String value, int historyLimit) {
+        // 玩家信息和记录总数在只有一行的子查询中计算一次（带 LIMIT 的子查询不会被展开到连接中），
+        // 再连接历史记录；COUNT 不会随连接出的每一行重复执行
+        String sql = "SELECT p.uuid, p.name, p.current_ip, p.current_location, p.current_isp, p.last_seen, p.history_total, " +
+                "h.ip, h.first_seen, h.last_seen AS ip_last_seen, h.location, h.isp " +
+                "FROM (SELECT p.uuid, p.name, p.current_ip, p.current_location, p.current_isp, p.last_seen, " +
+                "(SELECT COUNT(*) FROM " + ipHistoryTable + " c WHERE c.player_uuid = p.uuid) AS history_total " +
+                "FROM " + playersTable + " p WHERE " + condition + " LIMIT 1) p " +
+                "LEFT JOIN " + ipHistoryTable + " h ON h.player_uuid = p.uuid " +
+                "ORDER BY h.last_seen DESC, h.ip DESC LIMIT ?";
+
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare(sql);
+            stmt.setString(1, value);
+            stmt.setInt(2, historyLimit > 0 ? historyLimit : -1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                PlayerData playerData = null;
+                while (rs.next()) {
+                    if (playerData == null) {
+                        playerData = readPlayer(rs);
+                        playerData.setHistoryTotal(rs.getInt("history_total"));
+                    }
+                    if (rs.getBytes("ip") != null) {
+                        // 结果按最后使用时间倒序，直接追加即保持最新在前
+                        playerData.getIpHistory().add(readRecord(rs, "ip_last_seen"));
+                    }
+                }
+                if (playerData != null) {
+                    playerData.markClean();
+                }
+                return playerData;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "从SQLite加载玩家数据失败: " + e.getMessage(), e);
+            return null;
+        } finally {
+            returnReader(reader);
+        }
+    }
+
+    @Override
+    public List<IPRecord> getIPHistoryPage(UUID uuid, HistoryCursor after, int limit) {
+        String sql = "SELECT ip, first_seen, last_seen, location, isp FROM " + ipHistoryTable +
+                " WHERE player_uuid = ?" +
+                (after != null ? " AND (last_seen < ? OR (last_seen = ? AND ip < ?))" : "") +
+                " ORDER BY last_seen DESC, ip DESC LIMIT ?";
+
+        List<IPRecord> records = new ArrayList<>(limit);
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare(sql);
+            int index = 1;
+            stmt.setString(index++, uuid.toString());
+            if (after != null) {
+                stmt.setLong(index++, after.getLastSeen());
+                stmt.setLong(index++, after.getLastSeen());
+                stmt.setBytes(index++, after.getAddress());
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    IPRecord record = readRecord(rs, "last_seen");
+                    record.markClean();
+                    records.add(record);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "分页读取IP记录失败: " + e.getMessage(), e);
+        } finally {
+            returnReader(reader);
+        }
+        return records;
+    }
+
+    @Override
+    public HistoryCursor findHistoryCursor(UUID uuid, int skip) {
+        if (skip < 1) {
+            return null;
+        }
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare("SELECT last_seen, ip FROM " + ipHistoryTable +
+                    " WHERE player_uuid = ? ORDER BY last_seen DESC, ip DESC LIMIT 1 OFFSET ?");
+            stmt.setString(1, uuid.toString());
+            stmt.setInt(2, skip - 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new HistoryCursor(rs.getLong("last_seen"), rs.getBytes("ip"));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "查找分页游标失败: " + e.getMessage(), e);
+        } finally {
+            returnReader(reader);
+        }
+        return null;
+    }
+
+    @Override
+    public IPRecord getLastIPRecord(UUID uuid) {
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare("SELECT ip, first_seen, last_seen, location, isp FROM " + ipHistoryTable +
+                    " WHERE player_uuid = ? ORDER BY last_seen DESC LIMIT 1");
+            stmt.setString(1, uuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readRecord(rs, "last_seen") : null;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "获取最后IP记录失败: " + e.getMessage(), e);
+            return null;
+        } finally {
+            returnReader(reader);
+        }
+    }
+
+    @Override
+    public boolean isIPRecorded(UUID uuid, String ip) {
+        byte[] address = IPAddresses.toBytes(ip);
+        if (address == null) {
+            return false;
+        }
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare("SELECT 1 FROM " + ipHistoryTable + " WHERE player_uuid = ? AND ip = ? LIMIT 1");
+            stmt.setString(1, uuid.toString());
+            stmt.setBytes(2, address);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "检查IP记录失败: " + e.getMessage(), e);
+            return false;
+        } finally {
+            returnReader(reader);
+        }
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        Map<UUID, String> accounts = new LinkedHashMap<>();
+        byte[] address = IPAddresses.toBytes(ip);
+        if (address == null) {
+            return accounts;
+        }
+
+        // BLOB按字节比较，网段同样是 idx_ip 上的连续区间
+        String match = subnet ? "h.ip BETWEEN ? AND ?" : "h.ip = ?";
+        CachedConnection reader = null;
+        try {
+            reader = borrowReader();
+            PreparedStatement stmt = reader.prepare("SELECT DISTINCT h.player_uuid, p.name FROM " + ipHistoryTable + " h " +
+                    "LEFT JOIN " + playersTable + " p ON p.uuid = h.player_uuid WHERE " + match);
+            if (subnet) {
+                byte[][] range = IPAddresses.subnetRange(address);
+                stmt.setBytes(1, range[0]);
+                stmt.setBytes(2, range[1]);
+            } else {
+                stmt.setBytes(1, address);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.put(UUID.fromString(rs.getString(1)), rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "按IP查找玩家失败: " + e.getMessage(), e);
+        } finally {
+            returnReader(reader);
+        }
+        return accounts;
+    }
+
+    private static PlayerData readPlayer(ResultSet rs) throws SQLException {
+        PlayerData playerData = new PlayerData(rs.getString("uuid"), rs.getString("name"));
+        playerData.setCurrentAddress(rs.getBytes("current_ip"));
+        playerData.setCurrentLocation(rs.getString("current_location"));
+        playerData.setCurrentISP(rs.getString("current_isp"));
+        playerData.setLastSeen(rs.getLong("last_seen"));
+        return playerData;
+    }
+
+    private static IPRecord readRecord(ResultSet rs, String lastSeenColumn) throws SQLException {
+        IPRecord record = new IPRecord(rs.getBytes("ip"), rs.getLong("first_seen"), rs.getLong(lastSeenColumn));
+        record.setLocation(rs.getString("location"));
+        record.setIsp(rs.getString("isp"));
+        return record;
+    }
+
+    /**
+     * 未知时间使用当前时间
+     */
+    private static long toMillis(long millis) {
+        return millis > 0 ? millis : TimeService.currentTimeMillis();
+    }
+
+    /**
+     * 一个连接及其预编译语句缓存，同一时间只由一个线程使用
+     */
+    private final class CachedConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+                statements.clear();
+                connection.close();
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "关闭SQLite连接时出错: " + e.getMessage(), e);
+            }
+        }
+    }
+}
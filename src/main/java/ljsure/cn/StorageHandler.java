@@ -1,7 +1,10 @@
 package ljsure.cn;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 public interface StorageHandler {
     /**
@@ -24,11 +27,44 @@ public interface StorageHandler {
      */
     PlayerData loadPlayerData(UUID uuid);
 
+    /**
+     * 根据UUID加载玩家数据，只取最新的 historyLimit 条IP记录（0 表示全部）
+     * 未单独实现时加载全部记录
+     */
+    default PlayerData loadPlayerData(UUID uuid, int historyLimit) {
+        return loadPlayerData(uuid);
+    }
+
     /**
      * 根据玩家名查找玩家数据
      */
     PlayerData findPlayerDataByName(String playerName);
 
+    /**
+     * 根据玩家名查找玩家数据，只取最新的 historyLimit 条IP记录（0 表示全部）
+     */
+    default PlayerData findPlayerDataByName(String playerName, int historyLimit) {
+        return findPlayerDataByName(playerName);
+    }
+
+    /**
+     * 按最后使用时间倒序分页读取玩家的IP记录，返回排在游标之后的最多 limit 条
+     * 游标为null时从最新的记录开始；未单独实现时加载全部记录后在内存中分页
+     */
+    default List<IPRecord> getIPHistoryPage(UUID uuid, HistoryCursor after, int limit) {
+        PlayerData playerData = loadPlayerData(uuid);
+        return playerData != null ? HistoryPages.page(playerData.getIpHistory(), after, limit) : new ArrayList<>();
+    }
+
+    /**
+     * 按分页顺序跳过前 skip 条记录，返回第 skip 条记录之后的游标，用于不逐页读取直接跳到某一页
+     * 记录不足 skip 条时返回null；未单独实现时加载全部记录后在内存中查找
+     */
+    default HistoryCursor findHistoryCursor(UUID uuid, int skip) {
+        PlayerData playerData = loadPlayerData(uuid);
+        return playerData != null ? HistoryPages.cursorAt(playerData.getIpHistory(), skip) : null;
+    }
+
     /**
      * 获取玩家的最后一条IP记录
      */
@@ -38,4 +74,26 @@ public interface StorageHandler {
      * 检查IP是否已经存在记录中
      */
     boolean isIPRecorded(UUID uuid, String ip);
-}
\ No newline at end of file
+
+    /**
+     * 查找使用过某个IP的所有玩家（UUID -> 玩家名）
+     * subnet 为 true 时按 IPv4 /24 或 IPv6 /48 网段匹配
+     */
+    Map<UUID, String> findAccountsByIP(String ip, boolean subnet);
+
+    /**
+     * 按固定顺序逐个导出所有玩家（用于存储迁移），afterUuid 不为null时从该玩家之后继续
+     * consumer 返回false时停止
+     */
+    void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws Exception;
+
+    /**
+     * 批量写入一批玩家（用于存储迁移），返回时数据已经持久化
+     * 未单独实现时逐个保存
+     */
+    default void importPlayers(List<PlayerData> players) throws Exception {
+        for (PlayerData playerData : players) {
+            savePlayerData(playerData);
+        }
+    }
+}
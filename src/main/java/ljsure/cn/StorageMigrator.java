@@ -0,0 +1,222 @@
+package ljsure.cn;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * 在两种存储类型之间迁移玩家数据
+ * 来源按固定顺序逐个导出玩家，攒满一批后整批写入目标，内存中只保留当前这一批；
+ * 每批写入成功后记录检查点，中断后再次执行同一命令会从检查点继续
+ */
+public class StorageMigrator {
+    public static final List<String> STORAGE_TYPES = Arrays.asList("yaml", "mysql", "log", "sqlite");
+    // 导入时保留已有的较新数据的存储类型；其他类型整体覆盖，有玩家在线时不能迁移到正在使用的该类存储
+    public static final List<String> MERGING_TYPES = Arrays.asList("mysql", "sqlite");
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    private final IPLog plugin;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public StorageMigrator(IPLog plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 在后台开始迁移，已有迁移在进行时返回false
+     * restart 为true时忽略已有的检查点，从头开始
+     */
+    public boolean start(CommandSender sender, String from, String to, boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            plugin.getExecutors().query().execute(() -> {
+                try {
+                    migrate(sender, from, to, restart);
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.SEVERE, "迁移存储数据失败: " + e.getMessage(), e);
+                    send(sender, ChatColor.RED + "迁移失败: " + e.getMessage() + "，再次执行命令将从检查点继续");
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            send(sender, ChatColor.RED + "服务器繁忙，请稍后再试");
+        }
+        return true;
+    }
+
+    private void migrate(CommandSender sender, String from, String to, boolean restart) throws Exception {
+        File checkpointFile = new File(plugin.getDataFolder(), "migrate-" + from + "-" + to + ".checkpoint");
+        if (restart) {
+            Files.deleteIfExists(checkpointFile.toPath());
+        }
+        Progress progress = loadCheckpoint(checkpointFile);
+        int batchSize = Math.max(1, plugin.getConfig().getInt("migrate.batch-size", 500));
+
+        send(sender, ChatColor.YELLOW + (progress.lastUuid == null
+                ? "开始迁移: " + from + " -> " + to
+                : "从检查点继续迁移: " + from + " -> " + to + "，已完成 " + progress.players + " 名玩家"));
+
+        StorageHandler source = null;
+        StorageHandler target = null;
+        try {
+            source = open(from, true);
+            target = open(to, false);
+
+            StorageHandler destination = target;
+            List<PlayerData> batch = new ArrayList<>(batchSize);
+            long start = System.currentTimeMillis();
+            progress.lastReport = start;
+
+            source.exportPlayers(progress.lastUuid, playerData -> {
+                // 目标存储只写入脏数据，导出的玩家需要整体标记
+                playerData.markDirty();
+                batch.add(playerData);
+                if (batch.size() < batchSize) {
+                    return true;
+                }
+                try {
+                    flush(sender, destination, batch, progress, checkpointFile, start);
+                    return true;
+                } catch (Exception e) {
+                    progress.failure = e;
+                    return false;
+                }
+            });
+            if (progress.failure != null) {
+                throw progress.failure;
+            }
+            flush(sender, destination, batch, progress, checkpointFile, start);
+
+            Files.deleteIfExists(checkpointFile.toPath());
+            if (plugin.getPlayerCache() != null) {
+                plugin.getPlayerCache().invalidateAll();
+            }
+            if (plugin.getLoginPrefetcher() != null) {
+                plugin.getLoginPrefetcher().clear();
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            String message = "迁移完成: " + progress.players + " 名玩家，" + progress.records + " 条IP记录，耗时 " +
+                    elapsed / 1000 + " 秒";
+            plugin.getLogger().info(message);
+            send(sender, ChatColor.GREEN + message);
+        } finally {
+            close(source, from);
+            close(target, to);
+        }
+    }
+
+    /**
+     * 写入当前批次并记录检查点
+     */
+    private void flush(CommandSender sender, StorageHandler target, List<PlayerData> batch, Progress progress,
+                       File checkpointFile, long start) throws Exception {
+        if (batch.isEmpty()) {
+            return;
+        }
+        target.importPlayers(batch);
+
+        progress.players += batch.size();
+        for (PlayerData playerData : batch) {
+            progress.records += playerData.getIpHistory().size();
+        }
+        progress.lastUuid = batch.get(batch.size() - 1).getUuid();
+        batch.clear();
+        saveCheckpoint(checkpointFile, progress);
+
+        long now = System.currentTimeMillis();
+        if (now - progress.lastReport >= PROGRESS_INTERVAL_MILLIS) {
+            progress.lastReport = now;
+            long rate = progress.players * 1000L / Math.max(1, now - start);
+            String message = "已迁移 " + progress.players + " 名玩家，" + progress.records + " 条IP记录（" + rate + " 名/秒）";
+            plugin.getLogger().info(message);
+            send(sender, ChatColor.YELLOW + message);
+        }
+    }
+
+    /**
+     * 当前使用中的存储直接复用；未启用的 YAML 来源不初始化，导出时流式读取文件
+     */
+    private StorageHandler open(String type, boolean source) throws Exception {
+        if (type.equals(plugin.getStorageType())) {
+            return plugin.getBackendStorage();
+        }
+        StorageHandler handler = plugin.createStorageHandler(type);
+        if (!(source && handler instanceof YamlStorageHandler)) {
+            handler.initialize();
+        }
+        return handler;
+    }
+
+    private void close(StorageHandler handler, String type) {
+        if (handler != null && !type.equals(plugin.getStorageType())) {
+            handler.shutdown();
+        }
+    }
+
+    private Progress loadCheckpoint(File file) throws IOException {
+        Progress progress = new Progress();
+        if (!file.exists()) {
+            return progress;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        progress.lastUuid = properties.getProperty("last-uuid");
+        progress.players = Long.parseLong(properties.getProperty("players", "0"));
+        progress.records = Long.parseLong(properties.getProperty("records", "0"));
+        return progress;
+    }
+
+    /**
+     * 先写临时文件再替换，避免中断时留下不完整的检查点
+     */
+    private void saveCheckpoint(File file, Progress progress) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("last-uuid", progress.lastUuid);
+        properties.setProperty("players", String.valueOf(progress.players));
+        properties.setProperty("records", String.valueOf(progress.records));
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, "IPLog storage migration checkpoint");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void send(CommandSender sender, String message) {
+        Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(message));
+    }
+
+    private static final class Progress {
+        String lastUuid;
+        long players;
+        long records;
+        long lastReport;
+        Exception failure;
+    }
+}
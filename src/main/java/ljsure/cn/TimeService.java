@@ -0,0 +1,130 @@
+package ljsure.cn;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 统一的时间服务：内部统一使用毫秒时间戳，只在显示时格式化
+ * 格式化器不可变且线程安全，可被所有异步线程共享；登录路径使用定时刷新的粗粒度时钟
+ */
+public final class TimeService {
+    private static final String DEFAULT_ZONE = "Asia/Shanghai";
+    private static final String DEFAULT_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    // 旧版本数据固定以 Asia/Shanghai 时区的字符串保存，与显示时区无关
+    private static final ZoneId LEGACY_ZONE = ZoneId.of(DEFAULT_ZONE);
+    private static final DateTimeFormatter LEGACY_FORMATTER = DateTimeFormatter.ofPattern(DEFAULT_PATTERN).withZone(LEGACY_ZONE);
+
+    private static volatile TimeService instance = new TimeService(LEGACY_ZONE, LEGACY_FORMATTER, 0);
+
+    private final ZoneId zone;
+    private final DateTimeFormatter formatter;
+    private final long clockResolutionMillis;
+    private final ScheduledExecutorService clock;
+    private volatile long now = System.currentTimeMillis();
+
+    private TimeService(ZoneId zone, DateTimeFormatter formatter, long clockResolutionMillis) {
+        this.zone = zone;
+        this.formatter = formatter;
+        this.clockResolutionMillis = clockResolutionMillis;
+
+        if (clockResolutionMillis > 0) {
+            this.clock = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "IPLog-Clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.clock.scheduleAtFixedRate(() -> now = System.currentTimeMillis(),
+                    clockResolutionMillis, clockResolutionMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.clock = null;
+        }
+    }
+
+    /**
+     * 根据 time.* 配置创建并启用时间服务，配置无效时回退到默认值
+     */
+    public static TimeService install(FileConfiguration config, Logger logger) {
+        ZoneId zone;
+        try {
+            zone = ZoneId.of(config.getString("time.zone", DEFAULT_ZONE));
+        } catch (DateTimeException e) {
+            logger.warning("无效的时区配置 time.zone，使用默认值 " + DEFAULT_ZONE);
+            zone = LEGACY_ZONE;
+        }
+
+        DateTimeFormatter formatter;
+        try {
+            formatter = DateTimeFormatter.ofPattern(config.getString("time.format", DEFAULT_PATTERN)).withZone(zone);
+        } catch (IllegalArgumentException e) {
+            logger.warning("无效的时间格式 time.format，使用默认值 " + DEFAULT_PATTERN);
+            formatter = DateTimeFormatter.ofPattern(DEFAULT_PATTERN).withZone(zone);
+        }
+
+        TimeService service = new TimeService(zone, formatter, Math.max(0, config.getLong("time.clock-resolution-ms", 100)));
+        TimeService previous = instance;
+        instance = service;
+        previous.shutdown();
+        return service;
+    }
+
+    public static TimeService get() {
+        return instance;
+    }
+
+    /**
+     * 当前时间（毫秒），启用粗粒度时钟时精度为 time.clock-resolution-ms
+     */
+    public static long currentTimeMillis() {
+        TimeService service = instance;
+        return service.clock != null ? service.now : System.currentTimeMillis();
+    }
+
+    /**
+     * 格式化为显示用的时间字符串，0 表示未知
+     */
+    public static String format(long millis) {
+        return millis > 0 ? instance.formatter.format(Instant.ofEpochMilli(millis)) : "未知";
+    }
+
+    /**
+     * 读取旧版本保存的时间：毫秒数或 "yyyy-MM-dd HH:mm:ss" 字符串，无法识别时返回0
+     */
+    public static long toMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return LocalDateTime.parse((String) value, LEGACY_FORMATTER).atZone(LEGACY_ZONE).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return 0L;
+            }
+        }
+        return 0L;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public long getClockResolutionMillis() {
+        return clockResolutionMillis;
+    }
+
+    public void shutdown() {
+        if (clock != null) {
+            clock.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ljsure.cn;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 流式读取 YAML 数据文件中的玩家
+ * 基于 SnakeYAML 的事件接口逐个解析 players 下的玩家，同一时间只在内存中保留一个玩家，
+ * 不会像 YamlConfiguration.loadConfiguration 那样把整个文件读成对象树
+ */
+public class YamlPlayerReader {
+    private static final Pattern INTEGER = Pattern.compile("[-+]?[0-9]+");
+    private static final Pattern DECIMAL = Pattern.compile("[-+]?([0-9]*\\.[0-9]+|[0-9]+\\.[0-9]*)([eE][-+]?[0-9]+)?");
+
+    private final File file;
+
+    public YamlPlayerReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 按文件中的顺序读取玩家，afterUuid 不为null时跳过该玩家及之前的所有玩家
+     * consumer 返回false时停止读取；返回是否找到了 afterUuid（为null时始终为true）
+     */
+    public boolean read(String afterUuid, Predicate<PlayerData> consumer) throws IOException {
+        if (!file.exists()) {
+            return afterUuid == null;
+        }
+
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        boolean skipping = afterUuid != null;
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Iterator<Event> events = new Yaml(options).parse(reader).iterator();
+            if (!advanceToPlayers(events)) {
+                return !skipping;
+            }
+
+            while (events.hasNext()) {
+                Event event = events.next();
+                if (event instanceof MappingEndEvent) {
+                    break;
+                }
+                if (!(event instanceof ScalarEvent)) {
+                    throw new IOException("无法识别的玩家键: " + event);
+                }
+                String uuid = ((ScalarEvent) event).getValue();
+
+                if (skipping) {
+                    skipNode(events, events.next());
+                    if (uuid.equals(afterUuid)) {
+                        skipping = false;
+                    }
+                    continue;
+                }
+
+                Object value = readNode(events, events.next());
+                if (!(value instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> playerMap = (Map<String, Object>) value;
+                // ConfigurationSerializable 写入的类型标记
+                playerMap.remove("==");
+                if (!consumer.test(PlayerData.fromMap(uuid, playerMap))) {
+                    return true;
+                }
+            }
+        } catch (RuntimeException e) {
+            // SnakeYAML 的解析错误为运行时异常
+            throw new IOException("解析 " + file.getName() + " 失败: " + e.getMessage(), e);
+        }
+        return !skipping;
+    }
+
+    /**
+     * 前进到顶层 players 映射的开始处，文件中没有玩家时返回false
+     */
+    private boolean advanceToPlayers(Iterator<Event> events) throws IOException {
+        while (events.hasNext()) {
+            if (events.next() instanceof MappingStartEvent) {
+                break;
+            }
+        }
+        while (events.hasNext()) {
+            Event event = events.next();
+            if (event instanceof MappingEndEvent) {
+                return false;
+            }
+            if (event instanceof ScalarEvent && "players".equals(((ScalarEvent) event).getValue())) {
+                return events.hasNext() && events.next() instanceof MappingStartEvent;
+            }
+            skipNode(events, events.next());
+        }
+        return false;
+    }
+
+    private Object readNode(Iterator<Event> events, Event start) throws IOException {
+        if (start instanceof ScalarEvent) {
+            return resolveScalar((ScalarEvent) start);
+        }
+        if (start instanceof MappingStartEvent) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            while (true) {
+                Event key = events.next();
+                if (key instanceof MappingEndEvent) {
+                    return map;
+                }
+                if (!(key instanceof ScalarEvent)) {
+                    throw new IOException("不支持的映射键: " + key);
+                }
+                map.put(((ScalarEvent) key).getValue(), readNode(events, events.next()));
+            }
+        }
+        if (start instanceof SequenceStartEvent) {
+            List<Object> list = new ArrayList<>();
+            while (true) {
+                Event item = events.next();
+                if (item instanceof SequenceEndEvent) {
+                    return list;
+                }
+                list.add(readNode(events, item));
+            }
+        }
+        if (start instanceof AliasEvent) {
+            throw new IOException("数据文件中不应出现锚点引用");
+        }
+        throw new IOException("无法识别的YAML事件: " + start);
+    }
+
+    private void skipNode(Iterator<Event> events, Event start) {
+        if (!(start instanceof MappingStartEvent) && !(start instanceof SequenceStartEvent)) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            Event event = events.next();
+            if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+                depth++;
+            } else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 按 YAML 1.1 的常见规则解析无引号标量，带引号的始终是字符串
+     */
+    private static Object resolveScalar(ScalarEvent event) {
+        String value = event.getValue();
+        if (!event.isPlain()) {
+            return value;
+        }
+        if (value.isEmpty() || value.equals("~") || value.equals("null")) {
+            return null;
+        }
+        if (value.equals("true")) {
+            return Boolean.TRUE;
+        }
+        if (value.equals("false")) {
+            return Boolean.FALSE;
+        }
+        if (INTEGER.matcher(value).matches()) {
+            try {
+                long number = Long.parseLong(value);
+                if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    return (int) number;
+                }
+                return number;
+            } catch (NumberFormatException e) {
+                return value;
+            }
+        }
+        if (DECIMAL.matcher(value).matches()) {
+            return Double.parseDouble(value);
+        }
+        return value;
+    }
+}
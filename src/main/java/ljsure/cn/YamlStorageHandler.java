@@ -1,13 +1,15 @@
 package ljsure.cn;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 public class YamlStorageHandler implements StorageHandler {
@@ -15,14 +17,21 @@ public class YamlStorageHandler implements StorageHandler {
     private FileConfiguration dataConfig;
     private File dataFile;
 
+    // 玩家名（小写） -> UUID 的索引，避免按名称查找时遍历并反序列化所有玩家
+    private final Map<String, String> nameIndex = new ConcurrentHashMap<>();
+
+    // IP / 网段 -> 玩家UUID 的反向索引，以及 UUID -> 玩家名
+    private final Map<String, Set<String>> ipIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> subnetIndex = new ConcurrentHashMap<>();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
     public YamlStorageHandler(JavaPlugin plugin) {
         this.plugin = plugin;
     }
 
     @Override
     public void initialize() throws Exception {
-        String dataFileName = plugin.getConfig().getString("storage.data-file", "data.yml");
-        dataFile = new File(plugin.getDataFolder(), dataFileName);
+        dataFile = resolveDataFile();
 
         if (!dataFile.exists()) {
             try {
@@ -35,7 +44,8 @@ public class YamlStorageHandler implements StorageHandler {
         }
 
         dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-        plugin.getLogger().info("YAML存储系统已初始化");
+        buildIndexes();
+        plugin.getLogger().info("YAML存储系统已初始化，已索引玩家: " + names.size() + "，IP: " + ipIndex.size());
     }
 
     @Override
@@ -45,24 +55,100 @@ public class YamlStorageHandler implements StorageHandler {
 
     @Override
     public void savePlayerData(PlayerData playerData) {
+        synchronized (dataConfig) {
+            putPlayer(playerData);
+            saveDataConfig();
+        }
+        indexPlayer(playerData);
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) throws Exception {
+        boolean found;
+        if (dataConfig == null) {
+            // 未作为当前存储启用时直接流式读取文件，不把整个文件载入内存
+            found = new YamlPlayerReader(resolveDataFile()).read(afterUuid, consumer);
+        } else {
+            found = exportLoaded(afterUuid, consumer);
+        }
+        if (!found) {
+            throw new IllegalStateException("数据文件中找不到玩家 " + afterUuid + "，无法从检查点继续");
+        }
+    }
+
+    private boolean exportLoaded(String afterUuid, Predicate<PlayerData> consumer) {
+        List<String> uuids;
+        synchronized (dataConfig) {
+            ConfigurationSection players = dataConfig.getConfigurationSection("players");
+            uuids = players != null ? new ArrayList<>(players.getKeys(false)) : new ArrayList<>();
+        }
+
+        boolean skipping = afterUuid != null;
+        for (String uuid : uuids) {
+            if (skipping) {
+                skipping = !uuid.equals(afterUuid);
+                continue;
+            }
+            PlayerData playerData = loadPlayerData(UUID.fromString(uuid));
+            if (playerData != null && !consumer.test(playerData)) {
+                return true;
+            }
+        }
+        return !skipping;
+    }
+
+    @Override
+    public void importPlayers(List<PlayerData> players) throws Exception {
+        // 整批写入后只保存一次文件
+        synchronized (dataConfig) {
+            for (PlayerData playerData : players) {
+                putPlayer(playerData);
+            }
+            dataConfig.save(dataFile);
+        }
+        for (PlayerData playerData : players) {
+            indexPlayer(playerData);
+        }
+    }
+
+    private void putPlayer(PlayerData playerData) {
         String playerPath = "players." + playerData.getUuid();
+        // 玩家改名时移除旧名字的索引
+        String oldName = dataConfig.getString(playerPath + ".name");
+        if (oldName != null && !oldName.equalsIgnoreCase(playerData.getName())) {
+            nameIndex.remove(oldName.toLowerCase(Locale.ROOT), playerData.getUuid());
+        }
         dataConfig.set(playerPath, playerData.serialize());
-        saveDataConfig();
+    }
+
+    private void indexPlayer(PlayerData playerData) {
+        indexName(playerData.getUuid(), playerData.getName());
+        for (IPRecord record : playerData.getDirtyRecords()) {
+            indexIP(playerData.getUuid(), record.getIp());
+        }
+        playerData.markClean();
     }
 
     @Override
     public PlayerData loadPlayerData(UUID uuid) {
         String playerPath = "players." + uuid.toString();
-        if (!dataConfig.contains(playerPath)) {
+        Object playerObj;
+        synchronized (dataConfig) {
+            playerObj = dataConfig.get(playerPath);
+        }
+        if (playerObj == null) {
             return null;
         }
 
-        Object playerObj = dataConfig.get(playerPath);
         if (playerObj instanceof PlayerData) {
             return (PlayerData) playerObj;
+        } else if (playerObj instanceof ConfigurationSection) {
+            // 从文件加载后玩家数据是配置节，而不是Map
+            Map<String, Object> playerMap = new HashMap<>(((ConfigurationSection) playerObj).getValues(false));
+            return PlayerData.fromMap(uuid.toString(), playerMap);
         } else if (playerObj instanceof Map) {
             @SuppressWarnings("unchecked")
-            Map<String, Object> playerMap = (Map<String, Object>) playerObj;
+            Map<String, Object> playerMap = new HashMap<>((Map<String, Object>) playerObj);
             return PlayerData.fromMap(uuid.toString(), playerMap);
         }
 
@@ -71,17 +157,9 @@ public class YamlStorageHandler implements StorageHandler {
 
     @Override
     public PlayerData findPlayerDataByName(String playerName) {
-        if (!dataConfig.contains("players")) {
-            return null;
-        }
-
-        for (String uuid : dataConfig.getConfigurationSection("players").getKeys(false)) {
-            PlayerData data = loadPlayerData(UUID.fromString(uuid));
-            if (data != null && playerName.equalsIgnoreCase(data.getName())) {
-                return data;
-            }
-        }
-        return null;
+        // 通过名称索引定位，只反序列化匹配的玩家
+        String uuid = nameIndex.get(playerName.toLowerCase(Locale.ROOT));
+        return uuid != null ? loadPlayerData(UUID.fromString(uuid)) : null;
     }
 
     @Override
@@ -96,7 +174,68 @@ public class YamlStorageHandler implements StorageHandler {
     @Override
     public boolean isIPRecorded(UUID uuid, String ip) {
         IPRecord lastRecord = getLastIPRecord(uuid);
-        return lastRecord != null && ip.equals(lastRecord.getIp());
+        return lastRecord != null && lastRecord.matches(IPAddresses.toBytes(ip));
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        String key = subnet ? IPAddresses.subnetOf(ip) : IPAddresses.format(IPAddresses.toBytes(ip));
+        Set<String> uuids = key != null ? (subnet ? subnetIndex : ipIndex).get(key) : null;
+
+        Map<UUID, String> accounts = new LinkedHashMap<>();
+        if (uuids != null) {
+            for (String uuid : uuids) {
+                accounts.put(UUID.fromString(uuid), names.get(uuid));
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * 启动时只读取每个玩家的名字和历史IP构建索引，不反序列化完整数据
+     */
+    private void buildIndexes() {
+        nameIndex.clear();
+        names.clear();
+        ipIndex.clear();
+        subnetIndex.clear();
+        ConfigurationSection players = dataConfig.getConfigurationSection("players");
+        if (players == null) {
+            return;
+        }
+
+        for (String uuid : players.getKeys(false)) {
+            indexName(uuid, players.getString(uuid + ".name"));
+            for (Map<?, ?> recordMap : players.getMapList(uuid + ".ipHistory")) {
+                Object ip = recordMap.get("ip");
+                if (ip instanceof String) {
+                    // 统一为规范文本形式
+                    indexIP(uuid, IPAddresses.format(IPAddresses.toBytes((String) ip)));
+                }
+            }
+        }
+    }
+
+    private void indexName(String uuid, String name) {
+        if (name != null) {
+            nameIndex.put(name.toLowerCase(Locale.ROOT), uuid);
+            names.put(uuid, name);
+        }
+    }
+
+    private void indexIP(String uuid, String ip) {
+        if (ip == null) {
+            return;
+        }
+        ipIndex.computeIfAbsent(ip, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        String subnet = IPAddresses.subnetOf(ip);
+        if (subnet != null) {
+            subnetIndex.computeIfAbsent(subnet, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+    }
+
+    private File resolveDataFile() {
+        return new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.data-file", "data.yml"));
     }
 
     private void saveDataConfig() {
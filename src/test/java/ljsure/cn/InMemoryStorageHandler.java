@@ -0,0 +1,81 @@
+package ljsure.cn;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 只保存在内存中的存储，用于测试不依赖文件或数据库的逻辑，也用于性能测试中单独测量登录路径本身的开销
+ * 与真实存储一样，保存和读取的都是副本
+ */
+public class InMemoryStorageHandler implements StorageHandler {
+    private final Map<UUID, PlayerData> players = new ConcurrentHashMap<>();
+    private final Map<String, UUID> names = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void shutdown() {
+        players.clear();
+        names.clear();
+    }
+
+    @Override
+    public void savePlayerData(PlayerData playerData) {
+        UUID uuid = UUID.fromString(playerData.getUuid());
+        playerData.markClean();
+        players.put(uuid, playerData.copy());
+        if (playerData.getName() != null) {
+            names.put(playerData.getName().toLowerCase(), uuid);
+        }
+    }
+
+    @Override
+    public PlayerData loadPlayerData(UUID uuid) {
+        PlayerData data = players.get(uuid);
+        return data != null ? data.copy() : null;
+    }
+
+    @Override
+    public PlayerData findPlayerDataByName(String playerName) {
+        UUID uuid = names.get(playerName.toLowerCase());
+        return uuid != null ? loadPlayerData(uuid) : null;
+    }
+
+    @Override
+    public IPRecord getLastIPRecord(UUID uuid) {
+        PlayerData data = players.get(uuid);
+        return data != null && !data.getIpHistory().isEmpty() ? data.getIpHistory().get(0).copy() : null;
+    }
+
+    @Override
+    public boolean isIPRecorded(UUID uuid, String ip) {
+        PlayerData data = players.get(uuid);
+        return data != null && data.findExistingRecord(IPAddresses.toBytes(ip)) != null;
+    }
+
+    @Override
+    public Map<UUID, String> findAccountsByIP(String ip, boolean subnet) {
+        return new LinkedHashMap<>();
+    }
+
+    @Override
+    public void exportPlayers(String afterUuid, Predicate<PlayerData> consumer) {
+        // 与其他存储一样按UUID字符串顺序导出
+        TreeMap<String, PlayerData> sorted = new TreeMap<>();
+        for (PlayerData data : players.values()) {
+            sorted.put(data.getUuid(), data);
+        }
+        Map<String, PlayerData> remaining = afterUuid != null ? sorted.tailMap(afterUuid, false) : sorted;
+        for (PlayerData data : remaining.values()) {
+            if (!consumer.test(data.copy())) {
+                return;
+            }
+        }
+    }
+}
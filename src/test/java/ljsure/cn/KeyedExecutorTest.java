@@ -0,0 +1,164 @@
+package ljsure.cn;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedExecutorTest {
+    private static final int SUBMITTERS = 8;
+    private static final int JOINS_PER_SUBMITTER = 250;
+
+    private ExecutorService pool;
+    private KeyedExecutor<UUID> playerUpdates;
+    private StorageHandler storage;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(8);
+        playerUpdates = new KeyedExecutor<>(pool);
+        storage = new InMemoryStorageHandler();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 多个线程同时为同一玩家提交 加载-修改-保存，每次登录的IP记录都必须保留，
+     * 同一提交线程的登录按提交顺序执行
+     */
+    @Test
+    void concurrentJoinsForSameUuidKeepEveryRecord() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        List<List<Integer>> applied = new ArrayList<>();
+        for (int i = 0; i < SUBMITTERS; i++) {
+            applied.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        List<CompletableFuture<Void>> futures = submitConcurrently(uuid, applied);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        PlayerData playerData = storage.loadPlayerData(uuid);
+        assertNotNull(playerData);
+        assertEquals(SUBMITTERS * JOINS_PER_SUBMITTER, playerData.getIpHistory().size());
+        for (int submitter = 0; submitter < SUBMITTERS; submitter++) {
+            for (int join = 0; join < JOINS_PER_SUBMITTER; join++) {
+                assertNotNull(playerData.findExistingRecord(address(submitter, join)),
+                        "缺少 submitter=" + submitter + " join=" + join + " 的记录");
+            }
+
+            List<Integer> order = applied.get(submitter);
+            assertEquals(JOINS_PER_SUBMITTER, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                assertEquals(i, (int) order.get(i), "submitter=" + submitter + " 的登录未按提交顺序执行");
+            }
+        }
+        assertEquals(0, playerUpdates.getActiveKeys());
+    }
+
+    /**
+     * 不同玩家的更新互不影响，每个玩家只包含自己的记录
+     */
+    @Test
+    void concurrentJoinsForDifferentUuidsStaySeparate() throws Exception {
+        List<UUID> uuids = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < SUBMITTERS; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            List<List<Integer>> applied = new ArrayList<>();
+            for (int j = 0; j < SUBMITTERS; j++) {
+                applied.add(Collections.synchronizedList(new ArrayList<>()));
+            }
+            futures.addAll(submitConcurrently(uuid, applied));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+        for (UUID uuid : uuids) {
+            assertEquals(SUBMITTERS * JOINS_PER_SUBMITTER, storage.loadPlayerData(uuid).getIpHistory().size());
+        }
+    }
+
+    /**
+     * 一个任务失败不会阻塞同一键之后的任务
+     */
+    @Test
+    void failedTaskDoesNotBlockLaterTasks() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        CompletableFuture<Void> failed = playerUpdates.submit(uuid, () -> {
+            throw new IllegalStateException("expected");
+        });
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> next = playerUpdates.submit(uuid, () -> order.add(1));
+
+        next.get(5, TimeUnit.SECONDS);
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(Collections.singletonList(1), order);
+    }
+
+    private List<CompletableFuture<Void>> submitConcurrently(UUID uuid, List<List<Integer>> applied) throws InterruptedException {
+        List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < SUBMITTERS; i++) {
+            int submitter = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int join = 0; join < JOINS_PER_SUBMITTER; join++) {
+                    int current = join;
+                    futures.add(playerUpdates.submit(uuid, () -> {
+                        recordJoin(uuid, address(submitter, current));
+                        applied.get(submitter).add(current);
+                    }));
+                }
+            });
+            submitters.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : submitters) {
+            thread.join();
+        }
+        return futures;
+    }
+
+    /**
+     * 与 IPLog.recordJoins 相同的 加载-修改-保存 过程
+     */
+    private void recordJoin(UUID uuid, byte[] address) {
+        PlayerData playerData = storage.loadPlayerData(uuid);
+        if (playerData == null) {
+            playerData = new PlayerData(uuid.toString(), "player");
+        }
+        long now = System.currentTimeMillis();
+        playerData.setCurrentAddress(address);
+        playerData.setLastSeen(now);
+        playerData.addIPRecord(new IPRecord(address, now, now));
+        storage.savePlayerData(playerData);
+    }
+
+    private static byte[] address(int submitter, int join) {
+        return IPAddresses.toBytes("10." + submitter + "." + (join / 256) + "." + (join % 256));
+    }
+}
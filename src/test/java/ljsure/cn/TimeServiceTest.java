@@ -0,0 +1,67 @@
+package ljsure.cn;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeServiceTest {
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 20000;
+
+    // 2000-01-01 至 2100-01-01，按秒取整，与旧版本保存的字符串精度一致
+    private static final long FROM = 946684800000L;
+    private static final long TO = 4102444800000L;
+
+    @Test
+    void formatsLegacyPattern() {
+        assertEquals("2024-01-02 03:04:05", TimeService.format(1704135845000L));
+        assertEquals(1704135845000L, TimeService.toMillis("2024-01-02 03:04:05"));
+    }
+
+    @Test
+    void unknownValues() {
+        assertEquals("未知", TimeService.format(0));
+        assertEquals(0L, TimeService.toMillis("not a time"));
+        assertEquals(0L, TimeService.toMillis(null));
+        assertEquals(42L, TimeService.toMillis(42));
+    }
+
+    /**
+     * 多个线程同时格式化和解析，共享的格式化器不能互相干扰（旧版本的 SimpleDateFormat 会）
+     */
+    @Test
+    void concurrentRoundTrip() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        long millis = random.nextLong(FROM, TO) / 1000L * 1000L;
+                        String formatted = TimeService.format(millis);
+                        assertEquals(millis, TimeService.toMillis(formatted), "往返结果不一致: " + formatted);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}